@@ -0,0 +1,97 @@
+package org.apiary.benchmark;
+
+import org.apiary.config.HibernateConfig;
+import org.apiary.model.Client;
+import org.apiary.model.HoneyProduct;
+import org.apiary.model.Order;
+import org.apiary.service.ServiceFactory;
+import org.apiary.service.interfaces.HoneyProductService;
+import org.apiary.service.interfaces.OrderService;
+import org.apiary.service.interfaces.ShoppingCartService;
+import org.apiary.tools.DataGenerator;
+import org.apiary.utils.pagination.Pageable;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placing an order from a cart of a typical size, against the seeded in-memory database of
+ * the benchmark profile. Besides the time, the statements counter reports the SQL statements
+ * prepared per order (a JDBC batch counts once), which is the number of database round trips
+ * apart from the commit; it is read from the Hibernate statistics, which the benchmark
+ * profile keeps, so the benchmark must run on a single thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dapp.profile=benchmark")
+public class CheckoutBenchmark {
+
+    @Param({"3", "10"})
+    private int cartSize;
+
+    private HoneyProductService honeyProductService;
+    private ShoppingCartService shoppingCartService;
+    private OrderService orderService;
+
+    private Client client;
+    private List<HoneyProduct> products;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HibernateConfig.getSessionFactory();
+        DataGenerator.seedIfEnabled();
+
+        honeyProductService = ServiceFactory.getHoneyProductService();
+        shoppingCartService = ServiceFactory.getShoppingCartService();
+        orderService = ServiceFactory.getOrderService();
+
+        client = ServiceFactory.getUserService().findClientByUsername(DataGenerator.clientName(1))
+                .orElseThrow(() -> new IllegalStateException("Benchmark database was not seeded"));
+        products = honeyProductService.findAvailableProducts(new Pageable(0, cartSize)).getContent();
+    }
+
+    @Setup(Level.Invocation)
+    public void fillCart() {
+        for (HoneyProduct product : products) {
+            shoppingCartService.addToCart(client, product, 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HibernateConfig.shutdown();
+    }
+
+    @Benchmark
+    public Order createOrderFromCart(Statements statements) {
+        Statistics statistics = HibernateConfig.getSessionFactory().getStatistics();
+        long prepared = statistics.getPrepareStatementCount();
+        try {
+            return orderService.createOrderFromCart(client);
+        } finally {
+            statements.statements += statistics.getPrepareStatementCount() - prepared;
+            statements.orders++;
+        }
+    }
+
+    /**
+     * SQL statements prepared by the measured calls, reported alongside the time
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Statements {
+        public long statements;
+        public long orders;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            orders = 0;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.apiary.benchmark;
+
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
+import org.apiary.utils.pagination.PaginationUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory paging of a result list, for the first and the last page
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaginationBenchmark {
+
+    @Param({"100", "10000"})
+    private int items;
+
+    @Param({"20"})
+    private int pageSize;
+
+    private List<Integer> list;
+    private Pageable firstPage;
+    private Pageable lastPage;
+
+    @Setup
+    public void setUp() {
+        list = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            list.add(i);
+        }
+        firstPage = new Pageable(0, pageSize);
+        lastPage = new Pageable(PaginationUtils.calculateTotalPages(items, pageSize) - 1, pageSize);
+    }
+
+    @Benchmark
+    public Page<Integer> createFirstPage() {
+        return PaginationUtils.createPage(list, firstPage);
+    }
+
+    @Benchmark
+    public Page<Integer> createLastPage() {
+        return PaginationUtils.createPage(list, lastPage);
+    }
+}
@@ -0,0 +1,93 @@
+package org.apiary.benchmark;
+
+import org.apiary.config.HibernateConfig;
+import org.apiary.model.Beekeeper;
+import org.apiary.model.Client;
+import org.apiary.model.HoneyProduct;
+import org.apiary.model.Order;
+import org.apiary.service.ServiceFactory;
+import org.apiary.service.interfaces.HoneyProductService;
+import org.apiary.service.interfaces.OrderService;
+import org.apiary.service.interfaces.ShoppingCartService;
+import org.apiary.tools.DataGenerator;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service calls behind the catalog, cart and beekeeper order screens, against the seeded
+ * in-memory database of the benchmark profile (see DataGenerator for the volumes)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dapp.profile=benchmark")
+public class ServiceBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private HoneyProductService honeyProductService;
+    private ShoppingCartService shoppingCartService;
+    private OrderService orderService;
+
+    private Client client;
+    private Beekeeper beekeeper;
+    private Pageable catalogPage;
+    private Pageable ordersPage;
+    private LocalDateTime ordersFrom;
+    private LocalDateTime ordersTo;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HibernateConfig.getSessionFactory();
+        DataGenerator.seedIfEnabled();
+
+        honeyProductService = ServiceFactory.getHoneyProductService();
+        shoppingCartService = ServiceFactory.getShoppingCartService();
+        orderService = ServiceFactory.getOrderService();
+
+        client = ServiceFactory.getUserService().findClientByUsername(DataGenerator.clientName(0))
+                .orElseThrow(() -> new IllegalStateException("Benchmark database was not seeded"));
+        beekeeper = ServiceFactory.getUserService().findBeekeeperByUsername(DataGenerator.beekeeperName(0))
+                .orElseThrow(() -> new IllegalStateException("Benchmark database was not seeded"));
+
+        // A cart of a typical size
+        if (shoppingCartService.getCartItems(client).isEmpty()) {
+            Page<HoneyProduct> products = honeyProductService.findAvailableProducts(new Pageable(0, 3));
+            for (HoneyProduct product : products.getContent()) {
+                shoppingCartService.addToCart(client, product, 1);
+            }
+        }
+
+        catalogPage = new Pageable(0, PAGE_SIZE, "price", "asc");
+        ordersPage = new Pageable(0, PAGE_SIZE, "date", "desc");
+        ordersTo = LocalDateTime.now();
+        ordersFrom = ordersTo.minusYears(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HibernateConfig.shutdown();
+    }
+
+    @Benchmark
+    public Page<HoneyProduct> findByFilters() {
+        return honeyProductService.findByFilters("Acacia", new BigDecimal("20"), new BigDecimal("80"), catalogPage);
+    }
+
+    @Benchmark
+    public BigDecimal calculateCartTotal() {
+        return shoppingCartService.calculateCartTotal(client);
+    }
+
+    @Benchmark
+    public Page<Order> findOrdersWithFilters() {
+        return orderService.findOrdersWithFilters(beekeeper, "DELIVERED", ordersFrom, ordersTo, ordersPage);
+    }
+}
@@ -7,6 +7,7 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 import org.apiary.config.HibernateConfig;
+import org.apiary.tools.DataGenerator;
 
 public class Main extends Application {
 
@@ -14,6 +15,7 @@ public class Main extends Application {
     public void start(Stage primaryStage) throws Exception {
         // Initialize Hibernate
         HibernateConfig.getSessionFactory();
+        DataGenerator.seedIfEnabled();
 
         // Load the login view
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/views/login.fxml"));
@@ -27,10 +29,8 @@ public class Main extends Application {
 
     @Override
     public void stop() {
-        // Close Hibernate SessionFactory
-        if (HibernateConfig.getSessionFactory() != null) {
-            HibernateConfig.getSessionFactory().close();
-        }
+        // Close Hibernate SessionFactory and the second-level cache
+        HibernateConfig.shutdown();
     }
 
     public static void main(String[] args) {
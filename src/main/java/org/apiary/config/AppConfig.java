@@ -0,0 +1,458 @@
+package org.apiary.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Application settings, read once at startup from (lowest to highest precedence):
+ * <ol>
+ *   <li>application.properties on the classpath</li>
+ *   <li>application-&lt;profile&gt;.properties for the active profile (dev, prod or benchmark)</li>
+ *   <li>environment variables, named after the key in upper case with '.' replaced by '_'
+ *       (db.password is read from DB_PASSWORD)</li>
+ *   <li>system properties (-Ddb.password=...)</li>
+ * </ol>
+ * The active profile is the app.profile setting, resolved the same way, and defaults to dev.
+ */
+public final class AppConfig {
+
+    private static final Logger LOGGER = Logger.getLogger(AppConfig.class.getName());
+    public static final String PROFILE_KEY = "app.profile";
+    public static final String DEFAULT_PROFILE = "dev";
+    public static final String VENDOR_SQL_SERVER = "sqlserver";
+    public static final String VENDOR_H2 = "h2";
+
+    private static AppConfig instance;
+
+    private final String profile;
+    private final Properties properties;
+
+    private AppConfig(String profile, Properties properties) {
+        this.profile = profile;
+        this.properties = properties;
+    }
+
+    /**
+     * Get the application settings, loading them on first use
+     * @return The application settings
+     */
+    public static synchronized AppConfig getInstance() {
+        if (instance == null) {
+            instance = load();
+        }
+        return instance;
+    }
+
+    private static AppConfig load() {
+        Properties properties = new Properties();
+        loadResource(properties, "/application.properties");
+
+        String profile = lookup(properties, PROFILE_KEY);
+        if (profile == null || profile.isBlank()) {
+            profile = DEFAULT_PROFILE;
+        }
+        profile = profile.trim().toLowerCase(Locale.ROOT);
+        if (!loadResource(properties, "/application-" + profile + ".properties")) {
+            LOGGER.warning("No settings found for profile " + profile + ", using application.properties only");
+        }
+
+        LOGGER.info("Using configuration profile: " + profile);
+        return new AppConfig(profile, properties);
+    }
+
+    private static boolean loadResource(Properties properties, String resource) {
+        try (InputStream input = AppConfig.class.getResourceAsStream(resource)) {
+            if (input == null) {
+                return false;
+            }
+            properties.load(input);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error loading configuration: " + resource, e);
+            return false;
+        }
+    }
+
+    private static String lookup(Properties properties, String key) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(key.toUpperCase(Locale.ROOT).replace('.', '_'));
+        }
+        if (value == null) {
+            value = properties.getProperty(key);
+        }
+        return value == null ? null : value.trim();
+    }
+
+    /**
+     * Get the active profile
+     * @return The profile name
+     */
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * Get a setting
+     * @param key The key
+     * @param defaultValue The value to use if the setting is missing
+     * @return The value of the setting
+     */
+    public String getString(String key, String defaultValue) {
+        String value = lookup(properties, key);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    /**
+     * Get an integer setting
+     * @param key The key
+     * @param defaultValue The value to use if the setting is missing
+     * @return The value of the setting
+     * @throws IllegalStateException if the setting is not an integer
+     */
+    public int getInt(String key, int defaultValue) {
+        long value = getLong(key, defaultValue);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Setting " + key + " is out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Get a long integer setting
+     * @param key The key
+     * @param defaultValue The value to use if the setting is missing
+     * @return The value of the setting
+     * @throws IllegalStateException if the setting is not an integer
+     */
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Setting " + key + " must be an integer, was: " + value, e);
+        }
+    }
+
+    /**
+     * Get a decimal setting
+     * @param key The key
+     * @param defaultValue The value to use if the setting is missing
+     * @return The value of the setting
+     * @throws IllegalStateException if the setting is not a number
+     */
+    public double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Setting " + key + " must be a number, was: " + value, e);
+        }
+    }
+
+    /**
+     * Get a boolean setting
+     * @param key The key
+     * @param defaultValue The value to use if the setting is missing
+     * @return The value of the setting
+     * @throws IllegalStateException if the setting is not true or false
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+            return Boolean.parseBoolean(value);
+        }
+        throw new IllegalStateException("Setting " + key + " must be true or false, was: " + value);
+    }
+
+    // Database
+
+    public String getDbVendor() {
+        return getString("db.vendor", VENDOR_SQL_SERVER).toLowerCase(Locale.ROOT);
+    }
+
+    public String getDbServer() {
+        return getString("db.server", "localhost");
+    }
+
+    public int getDbPort() {
+        return getInt("db.port", 1433);
+    }
+
+    public String getDbName() {
+        return getString("db.name", "apiary");
+    }
+
+    public boolean isDbWindowsAuth() {
+        return getBoolean("db.windows.auth", false);
+    }
+
+    public String getDbUsername() {
+        return getString("db.username", null);
+    }
+
+    public String getDbPassword() {
+        return getString("db.password", null);
+    }
+
+    // Connection pool (C3P0)
+
+    public int getPoolMinSize() {
+        return getInt("db.pool.minSize", 5);
+    }
+
+    public int getPoolMaxSize() {
+        return getInt("db.pool.maxSize", 20);
+    }
+
+    public int getPoolTimeoutSeconds() {
+        return getInt("db.pool.timeout", 300);
+    }
+
+    public int getPoolStatementCacheSize() {
+        return getInt("db.pool.maxStatements", 50);
+    }
+
+    public int getPoolIdleTestPeriodSeconds() {
+        return getInt("db.pool.idleTestPeriod", 3000);
+    }
+
+    // Hibernate
+
+    public int getJdbcBatchSize() {
+        return getInt("hibernate.jdbc.batch_size", 30);
+    }
+
+    public int getJdbcFetchSize() {
+        return getInt("hibernate.jdbc.fetch_size", 100);
+    }
+
+    public boolean isShowSql() {
+        return getBoolean("hibernate.show_sql", false);
+    }
+
+    public boolean isFormatSql() {
+        return getBoolean("hibernate.format_sql", false);
+    }
+
+    public String getDdlAuto() {
+        return getString("hibernate.hbm2ddl.auto", "update");
+    }
+
+    public boolean isSecondLevelCacheEnabled() {
+        return getBoolean("hibernate.cache.use_second_level_cache", true);
+    }
+
+    public boolean isStatisticsEnabled() {
+        return getBoolean("hibernate.generate_statistics", true);
+    }
+
+    public String getStatementInspector() {
+        return getString("hibernate.statementInspector", null);
+    }
+
+    // Payments
+
+    public String getPaymentGateway() {
+        return getString("payment.gateway", "simulated");
+    }
+
+    public long getPaymentDelayMillis() {
+        return getLong("payment.delayMillis", 1500);
+    }
+
+    public int getPaymentMaxConcurrent() {
+        return getInt("payment.maxConcurrent", 32);
+    }
+
+    public int getPaymentMaxQueued() {
+        return getInt("payment.maxQueued", 1000);
+    }
+
+    public long getPaymentTimeoutMillis() {
+        return getLong("payment.timeoutMillis", 5000);
+    }
+
+    public int getPaymentMaxAttempts() {
+        return getInt("payment.maxAttempts", 3);
+    }
+
+    public long getPaymentRetryBackoffMillis() {
+        return getLong("payment.retryBackoffMillis", 200);
+    }
+
+    public long getPaymentRetryMaxBackoffMillis() {
+        return getLong("payment.retryMaxBackoffMillis", 2000);
+    }
+
+    public long getPaymentIdempotencyTtlSeconds() {
+        return getLong("payment.idempotency.ttlSeconds", 600);
+    }
+
+    public int getPaymentIdempotencyMaxEntries() {
+        return getInt("payment.idempotency.maxEntries", 10000);
+    }
+
+    // Order intake, see OrderIntake
+
+    public boolean isOrderIntakeEnabled() {
+        return getBoolean("order.intake.enabled", true);
+    }
+
+    public int getOrderIntakeWorkers() {
+        return getInt("order.intake.workers", 2);
+    }
+
+    public int getOrderIntakeMaxBatchSize() {
+        return getInt("order.intake.maxBatchSize", 50);
+    }
+
+    public long getOrderIntakeMaxWaitMillis() {
+        return getLong("order.intake.maxWaitMillis", 5);
+    }
+
+    public int getOrderIntakeMaxQueued() {
+        return getInt("order.intake.maxQueued", 10000);
+    }
+
+    // Order journal, see OrderJournal
+
+    public boolean isOrderJournalEnabled() {
+        return getBoolean("order.journal.enabled", true);
+    }
+
+    public String getOrderJournalDir() {
+        return getString("order.journal.dir", "journal");
+    }
+
+    public int getOrderJournalSegmentBytes() {
+        return getInt("order.journal.segmentBytes", 1048576);
+    }
+
+    public long getOrderJournalRetryBackoffMillis() {
+        return getLong("order.journal.retryBackoffMillis", 500);
+    }
+
+    public long getOrderJournalRetryMaxBackoffMillis() {
+        return getLong("order.journal.retryMaxBackoffMillis", 30000);
+    }
+
+    public long getOrderJournalAnswerTimeoutMillis() {
+        return getLong("order.journal.answerTimeoutMillis", 5000);
+    }
+
+    public int getOrderJournalMaxAttempts() {
+        return getInt("order.journal.maxAttempts", 50);
+    }
+
+    // Slow statements, see SlowQueryLog
+
+    public long getSlowQueryThresholdMillis() {
+        return getLong("sql.slow.thresholdMillis", 200);
+    }
+
+    public int getSlowQueryTopN() {
+        return getInt("sql.slow.topN", 10);
+    }
+
+    public String getSlowQueryLogDir() {
+        return getString("sql.slow.logDir", "logs");
+    }
+
+    public int getSlowQueryLogMaxBytes() {
+        return getInt("sql.slow.logMaxBytes", 10 * 1024 * 1024);
+    }
+
+    public int getSlowQueryLogFiles() {
+        return getInt("sql.slow.logFiles", 5);
+    }
+
+    public int getSlowQueryMaxParameterLength() {
+        return getInt("sql.slow.maxParameterLength", 100);
+    }
+
+    // Metrics, see MetricsRegistry
+
+    public boolean isMetricsEnabled() {
+        return getBoolean("metrics.enabled", true);
+    }
+
+    public boolean isMetricsJmxEnabled() {
+        return getBoolean("metrics.jmx.enabled", true);
+    }
+
+    public int getMetricsLogIntervalSeconds() {
+        return getInt("metrics.logIntervalSeconds", 60);
+    }
+
+    // Generated data, see DataGenerator
+
+    public boolean isSeedEnabled() {
+        return getBoolean("db.seed.enabled", false);
+    }
+
+    public long getSeedRandom() {
+        return getLong("db.seed.random", 42);
+    }
+
+    public int getSeedBeekeepers() {
+        return getInt("db.seed.beekeepers", 10);
+    }
+
+    public int getSeedApiariesPerBeekeeper() {
+        return getInt("db.seed.apiariesPerBeekeeper", 3);
+    }
+
+    public int getSeedHivesPerApiary() {
+        return getInt("db.seed.hivesPerApiary", 10);
+    }
+
+    public int getSeedProductsPerApiary() {
+        return getInt("db.seed.productsPerApiary", 5);
+    }
+
+    public int getSeedClients() {
+        return getInt("db.seed.clients", 100);
+    }
+
+    public int getSeedCartPercent() {
+        return getInt("db.seed.cartPercent", 20);
+    }
+
+    public int getSeedOrdersPerClient() {
+        return getInt("db.seed.ordersPerClient", 5);
+    }
+
+    public int getSeedMaxItemsPerOrder() {
+        return getInt("db.seed.maxItemsPerOrder", 6);
+    }
+
+    public int getSeedHistoryYears() {
+        return getInt("db.seed.historyYears", 3);
+    }
+
+    public double getSeedProductSkew() {
+        return getDouble("db.seed.productSkew", 1.1);
+    }
+
+    public double getSeedClientSkew() {
+        return getDouble("db.seed.clientSkew", 0.8);
+    }
+
+    public int getSeedBatchSize() {
+        return getInt("db.seed.batchSize", 500);
+    }
+}
@@ -0,0 +1,92 @@
+package org.apiary.config;
+
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Second-level cache regions for the catalog entities (HoneyProduct, Apiary, Hive).
+ * The regions live in an in-process Ehcache (JCache) cache manager, each bounded in
+ * size and time to live. Every region can be resized with the settings
+ * cache.&lt;region&gt;.maxEntries and cache.&lt;region&gt;.ttlSeconds (see AppConfig).
+ */
+public final class CacheConfig {
+
+    private static final Logger LOGGER = Logger.getLogger(CacheConfig.class.getName());
+
+    public static final String HONEY_PRODUCT_REGION = "catalog.honeyProduct";
+    public static final String APIARY_REGION = "catalog.apiary";
+    public static final String HIVE_REGION = "catalog.hive";
+
+    // Region name -> {max entries, time to live in seconds}
+    private static final Map<String, long[]> REGIONS = new LinkedHashMap<>();
+
+    static {
+        REGIONS.put(HONEY_PRODUCT_REGION, new long[]{10_000, 600});
+        REGIONS.put(APIARY_REGION, new long[]{2_000, 1_800});
+        REGIONS.put(HIVE_REGION, new long[]{5_000, 1_800});
+    }
+
+    // Prevent instantiation
+    private CacheConfig() {
+    }
+
+    /**
+     * Create the cache manager holding the catalog regions, to be handed to Hibernate
+     * @return The cache manager
+     */
+    public static CacheManager createCacheManager() {
+        CachingProvider provider = Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), CacheConfig.class.getClassLoader());
+
+        AppConfig config = AppConfig.getInstance();
+        for (Map.Entry<String, long[]> region : REGIONS.entrySet()) {
+            String name = region.getKey();
+            if (cacheManager.getCache(name) != null) {
+                continue;
+            }
+            long maxEntries = config.getLong("cache." + name + ".maxEntries", region.getValue()[0]);
+            long ttlSeconds = config.getLong("cache." + name + ".ttlSeconds", region.getValue()[1]);
+
+            CacheConfiguration<Object, Object> configuration = CacheConfigurationBuilder
+                    .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries))
+                    .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ttlSeconds)))
+                    .build();
+            cacheManager.createCache(name, Eh107Configuration.fromEhcacheCacheConfiguration(configuration));
+            LOGGER.info("Created cache region " + name + " (max " + maxEntries + " entries, ttl " + ttlSeconds + "s)");
+        }
+        return cacheManager;
+    }
+
+    /**
+     * Log the hit/miss/put counts of the catalog regions
+     * @param sessionFactory The session factory with statistics enabled
+     */
+    public static void logStatistics(SessionFactory sessionFactory) {
+        for (String name : REGIONS.keySet()) {
+            CacheRegionStatistics statistics = sessionFactory.getStatistics().getDomainDataRegionStatistics(name);
+            if (statistics == null) {
+                continue;
+            }
+            long hits = statistics.getHitCount();
+            long misses = statistics.getMissCount();
+            long ratio = hits + misses == 0 ? 0 : hits * 100 / (hits + misses);
+            LOGGER.info("Cache region " + name + ": " + hits + " hits, " + misses + " misses (" + ratio
+                    + "% hit ratio), " + statistics.getPutCount() + " puts, "
+                    + statistics.getElementCountInMemory() + " entries");
+        }
+    }
+}
@@ -1,72 +1,69 @@
 package org.apiary.config;
 
+import org.apiary.metrics.MetricsRegistry;
+import org.apiary.metrics.PersistenceMetrics;
+import org.apiary.metrics.SlowQueryLog;
 import org.apiary.model.*;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cache.jcache.ConfigSettings;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Environment;
 import org.hibernate.service.ServiceRegistry;
 
+import javax.cache.CacheManager;
 import java.util.Properties;
 
 public class HibernateConfig {
     private static SessionFactory sessionFactory;
+    private static CacheManager cacheManager;
 
     public static SessionFactory getSessionFactory() {
         if (sessionFactory == null) {
             try {
                 Configuration configuration = new Configuration();
 
-                // Hibernate settings
+                // Hibernate settings, see AppConfig for where each value comes from
+                AppConfig config = AppConfig.getInstance();
                 Properties settings = new Properties();
-                settings.put(Environment.DRIVER, "com.microsoft.sqlserver.jdbc.SQLServerDriver");
-
-                // FORCE SQL Server Authentication (disable Windows auth)
-                boolean useWindowsAuth = false; // Change this line from true to false
-
-                String serverName = System.getProperty("db.server", "localhost");
-                String port = System.getProperty("db.port", "1433");
-                String databaseName = System.getProperty("db.name", "apiary");
-
-                if (useWindowsAuth) {
-                    // Windows Authentication - DISABLED
-                    settings.put(Environment.URL,
-                            String.format("jdbc:sqlserver://%s:%s;" +
-                                            "databaseName=%s;" +
-                                            "integratedSecurity=true;" +
-                                            "trustServerCertificate=true;" +
-                                            "encrypt=false",
-                                    serverName, port, databaseName));
+                applyDataSource(settings, config);
+
+                settings.put(Environment.SHOW_SQL, String.valueOf(config.isShowSql()));
+                settings.put(Environment.FORMAT_SQL, String.valueOf(config.isFormatSql()));
+                settings.put(Environment.CURRENT_SESSION_CONTEXT_CLASS, "thread");
+                settings.put(Environment.HBM2DDL_AUTO, config.getDdlAuto());
+                // JDBC batching: group inserts/updates per entity so an order and its items
+                // are written in a few round-trips (requires non-IDENTITY ids, see Order)
+                settings.put(Environment.STATEMENT_BATCH_SIZE, String.valueOf(config.getJdbcBatchSize()));
+                settings.put(Environment.STATEMENT_FETCH_SIZE, String.valueOf(config.getJdbcFetchSize()));
+                settings.put(Environment.ORDER_INSERTS, "true");
+                settings.put(Environment.ORDER_UPDATES, "true");
+
+                // Second-level cache for the catalog entities, see CacheConfig for the regions
+                if (config.isSecondLevelCacheEnabled()) {
+                    cacheManager = CacheConfig.createCacheManager();
+                    settings.put(Environment.USE_SECOND_LEVEL_CACHE, "true");
+                    settings.put(Environment.CACHE_REGION_FACTORY, "jcache");
+                    settings.put(ConfigSettings.CACHE_MANAGER, cacheManager);
                 } else {
-                    // SQL Server Authentication - ENABLED
-                    String username = System.getProperty("db.username", "david");
-                    String password = System.getProperty("db.password", "treiezicucuieti");
-
-                    settings.put(Environment.URL,
-                            String.format("jdbc:sqlserver://%s:%s;" +
-                                            "databaseName=%s;" +
-                                            "trustServerCertificate=true;" +
-                                            "encrypt=false",
-                                    serverName, port, databaseName));
-                    settings.put(Environment.USER, username);
-                    settings.put(Environment.PASS, password);
+                    settings.put(Environment.USE_SECOND_LEVEL_CACHE, "false");
                 }
+                settings.put(Environment.GENERATE_STATISTICS, String.valueOf(config.isStatisticsEnabled()));
 
-                // ... rest of the method remains the same
+                // Only set by the tests, which count the statements of each service call
+                if (config.getStatementInspector() != null) {
+                    settings.put(Environment.STATEMENT_INSPECTOR, config.getStatementInspector());
+                }
 
-                settings.put(Environment.USER, "david");
-                settings.put(Environment.PASS, "treiezicucuieti");
-                settings.put(Environment.DIALECT, "org.hibernate.dialect.SQLServer2012Dialect");
-                settings.put(Environment.SHOW_SQL, "true");
-                settings.put(Environment.FORMAT_SQL, "true");
-                settings.put(Environment.CURRENT_SESSION_CONTEXT_CLASS, "thread");
-                settings.put(Environment.HBM2DDL_AUTO, "update");
-                settings.put(Environment.CONNECTION_PROVIDER, "org.hibernate.connection.C3P0ConnectionProvider");
-                settings.put(Environment.C3P0_MIN_SIZE, "5");
-                settings.put(Environment.C3P0_MAX_SIZE, "20");
-                settings.put(Environment.C3P0_TIMEOUT, "300");
-                settings.put(Environment.C3P0_MAX_STATEMENTS, "50");
-                settings.put(Environment.C3P0_IDLE_TEST_PERIOD, "3000");
+                // C3P0 pool; statements over sql.slow.thresholdMillis go to the SlowQueryLog
+                settings.put(Environment.CONNECTION_PROVIDER, SlowQueryLog.getInstance().isEnabled()
+                        ? SlowQueryConnectionProvider.class.getName()
+                        : "org.hibernate.connection.C3P0ConnectionProvider");
+                settings.put(Environment.C3P0_MIN_SIZE, String.valueOf(config.getPoolMinSize()));
+                settings.put(Environment.C3P0_MAX_SIZE, String.valueOf(config.getPoolMaxSize()));
+                settings.put(Environment.C3P0_TIMEOUT, String.valueOf(config.getPoolTimeoutSeconds()));
+                settings.put(Environment.C3P0_MAX_STATEMENTS, String.valueOf(config.getPoolStatementCacheSize()));
+                settings.put(Environment.C3P0_IDLE_TEST_PERIOD, String.valueOf(config.getPoolIdleTestPeriodSeconds()));
 
                 configuration.setProperties(settings);
 
@@ -86,6 +83,10 @@ public class HibernateConfig {
                 ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
                         .applySettings(configuration.getProperties()).build();
                 sessionFactory = configuration.buildSessionFactory(serviceRegistry);
+
+                // Hibernate and pool gauges, and the periodic metrics snapshot log
+                PersistenceMetrics.register(sessionFactory);
+                MetricsRegistry.getInstance().start();
             } catch (Exception e) {
                 System.err.println("Initial SessionFactory creation failed: " + e);
                 e.printStackTrace();
@@ -95,9 +96,65 @@ public class HibernateConfig {
         return sessionFactory;
     }
 
+    /**
+     * Set the driver, URL, credentials and dialect of the configured database (db.vendor):
+     * SQL Server, or an in-memory H2 database that needs no server, for benchmarks and
+     * offline runs (Hibernate generates H2 SQL for it, so no compatibility mode is needed)
+     * @param settings The Hibernate settings
+     * @param config The application settings
+     */
+    private static void applyDataSource(Properties settings, AppConfig config) {
+        if (AppConfig.VENDOR_H2.equals(config.getDbVendor())) {
+            settings.put(Environment.DRIVER, "org.h2.Driver");
+            // USER and VALUE are keywords in H2 but column/table names here
+            settings.put(Environment.URL, config.getString("db.url",
+                    "jdbc:h2:mem:" + config.getDbName() + ";DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE"));
+            settings.put(Environment.USER, config.getString("db.username", "sa"));
+            settings.put(Environment.PASS, config.getString("db.password", ""));
+            settings.put(Environment.DIALECT, "org.hibernate.dialect.H2Dialect");
+            return;
+        }
+
+        settings.put(Environment.DRIVER, "com.microsoft.sqlserver.jdbc.SQLServerDriver");
+        if (config.isDbWindowsAuth()) {
+            // Windows Authentication
+            settings.put(Environment.URL,
+                    String.format("jdbc:sqlserver://%s:%s;" +
+                                    "databaseName=%s;" +
+                                    "integratedSecurity=true;" +
+                                    "trustServerCertificate=true;" +
+                                    "encrypt=false",
+                            config.getDbServer(), config.getDbPort(), config.getDbName()));
+        } else {
+            // SQL Server Authentication
+            settings.put(Environment.URL,
+                    String.format("jdbc:sqlserver://%s:%s;" +
+                                    "databaseName=%s;" +
+                                    "trustServerCertificate=true;" +
+                                    "encrypt=false",
+                            config.getDbServer(), config.getDbPort(), config.getDbName()));
+            if (config.getDbUsername() == null || config.getDbPassword() == null) {
+                throw new IllegalStateException("db.username and db.password must be set for profile "
+                        + config.getProfile() + " (or use db.windows.auth=true)");
+            }
+            settings.put(Environment.USER, config.getDbUsername());
+            settings.put(Environment.PASS, config.getDbPassword());
+        }
+        settings.put(Environment.DIALECT, "org.hibernate.dialect.SQLServer2012Dialect");
+    }
+
     public static void shutdown() {
+        MetricsRegistry.getInstance().stop();
+        SlowQueryLog.getInstance().logSummary();
         if (sessionFactory != null) {
+            CacheConfig.logStatistics(sessionFactory);
             sessionFactory.close();
+            // The next getSessionFactory() builds a new one, e.g. for the next test class
+            sessionFactory = null;
+        }
+        if (cacheManager != null) {
+            cacheManager.close();
+            cacheManager = null;
         }
     }
 }
\ No newline at end of file
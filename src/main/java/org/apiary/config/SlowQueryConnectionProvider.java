@@ -0,0 +1,264 @@
+package org.apiary.config;
+
+import org.apiary.metrics.SlowQueryLog;
+import org.hibernate.c3p0.internal.C3P0ConnectionProvider;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The C3P0 connection provider, with every prepared statement timed for the SlowQueryLog.
+ * Set as Hibernate's connection provider by HibernateConfig when sql.slow.thresholdMillis
+ * is 0 or more. A statement's time runs from its execution until its results are read
+ * (the result set is closed), so slow fetches of large results count too. The bound
+ * parameters are kept as they are set, but only formatted for slow statements, and the
+ * call site is only looked up for them.
+ */
+public class SlowQueryConnectionProvider extends C3P0ConnectionProvider {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+            "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final SlowQueryLog slowQueryLog = SlowQueryLog.getInstance();
+    private final int maxParameterLength = AppConfig.getInstance().getSlowQueryMaxParameterLength();
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = super.getConnection();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof PreparedStatement
+                            && ("prepareStatement".equals(method.getName()) || "prepareCall".equals(method.getName()))) {
+                        return timed((Connection) proxy, (PreparedStatement) result, (String) args[0]);
+                    }
+                    return result;
+                });
+    }
+
+    private PreparedStatement timed(Connection connection, PreparedStatement statement, String sql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class : PreparedStatement.class;
+        return (PreparedStatement) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new TimedStatement(connection, statement, sql));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Keeps the parameters of a prepared statement and times its executions
+     */
+    private final class TimedStatement implements InvocationHandler {
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final String sql;
+
+        private Object[] parameters = new Object[8];
+        private Object[] firstBatch;
+        private int batchSize;
+
+        // The execution whose results are still being read
+        private long started;
+        private int rows;
+        private boolean pending;
+
+        TimedStatement(Connection connection, PreparedStatement statement, String sql) {
+            this.connection = connection;
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bind((Integer) args[0], "setNull".equals(name) ? null : args[1]);
+            } else if ("clearParameters".equals(name)) {
+                Arrays.fill(parameters, null);
+            } else if ("addBatch".equals(name) && (args == null || args.length == 0)) {
+                if (batchSize++ == 0) {
+                    firstBatch = parameters.clone();
+                }
+            } else if (EXECUTE_METHODS.contains(name)) {
+                return execute(proxy, method, args);
+            } else if ("getConnection".equals(name)) {
+                return connection;
+            } else if ("getResultSet".equals(name)) {
+                ResultSet resultSet = (ResultSet) SlowQueryConnectionProvider.invoke(statement, method, args);
+                return resultSet == null ? null : counted((Statement) proxy, resultSet);
+            } else if ("close".equals(name)) {
+                finish();
+            }
+            return SlowQueryConnectionProvider.invoke(statement, method, args);
+        }
+
+        private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+            finish();
+            started = System.nanoTime();
+            rows = 0;
+            pending = true;
+            Object result;
+            try {
+                result = SlowQueryConnectionProvider.invoke(statement, method, args);
+            } catch (Throwable e) {
+                rows = -1;
+                finish();
+                throw e;
+            }
+
+            if (result instanceof ResultSet) {
+                // Finished when the results are read
+                return counted((Statement) proxy, (ResultSet) result);
+            }
+            if (result instanceof int[]) {
+                rows = Arrays.stream((int[]) result).map(count -> Math.max(count, 0)).sum();
+            } else if (result instanceof long[]) {
+                rows = (int) Arrays.stream((long[]) result).map(count -> Math.max(count, 0)).sum();
+            } else if (result instanceof Number) {
+                rows = ((Number) result).intValue();
+            } else {
+                rows = -1;
+            }
+            finish();
+            return result;
+        }
+
+        private ResultSet counted(Statement proxy, ResultSet resultSet) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (resultSetProxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "next":
+                                Object hasRow = SlowQueryConnectionProvider.invoke(resultSet, method, args);
+                                if (Boolean.TRUE.equals(hasRow)) {
+                                    rows++;
+                                }
+                                return hasRow;
+                            case "getStatement":
+                                return proxy;
+                            case "close":
+                                finish();
+                                return SlowQueryConnectionProvider.invoke(resultSet, method, args);
+                            default:
+                                return SlowQueryConnectionProvider.invoke(resultSet, method, args);
+                        }
+                    });
+        }
+
+        private void bind(int index, Object value) {
+            if (index >= parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index + 1, parameters.length * 2));
+            }
+            parameters[index] = value;
+        }
+
+        private void finish() {
+            if (!pending) {
+                return;
+            }
+            pending = false;
+            long elapsed = System.nanoTime() - started;
+            int batch = batchSize;
+            Object[] batchParameters = firstBatch;
+            batchSize = 0;
+            firstBatch = null;
+            if (slowQueryLog.isSlow(elapsed)) {
+                String bound = batch > 0
+                        ? "batch of " + batch + ", first " + format(batchParameters)
+                        : format(parameters);
+                slowQueryLog.record(sql, bound, elapsed, rows, CallSite.find());
+            }
+        }
+
+        private String format(Object[] values) {
+            // Parameters are numbered from 1
+            List<String> bound = new ArrayList<>();
+            int last = values.length - 1;
+            while (last > 0 && values[last] == null) {
+                last--;
+            }
+            for (int i = 1; i <= last; i++) {
+                bound.add(formatValue(values[i]));
+            }
+            return bound.toString();
+        }
+
+        private String formatValue(Object value) {
+            if (value == null) {
+                return "null";
+            }
+            if (value instanceof byte[]) {
+                return "<" + ((byte[]) value).length + " bytes>";
+            }
+            String text = value instanceof String ? "'" + value + "'" : String.valueOf(value);
+            return text.length() <= maxParameterLength ? text : text.substring(0, maxParameterLength) + "...";
+        }
+    }
+
+    /**
+     * Finds the service and repository methods a statement was issued from
+     */
+    private static final class CallSite {
+
+        private CallSite() {
+        }
+
+        /**
+         * @return The outermost service implementation method and the outermost repository
+         *         method on the stack, e.g. "OrderServiceImpl.processPayment via
+         *         HoneyProductRepositoryImpl.decrementQuantities"; outside of services the
+         *         outermost application method, e.g. "DataGenerator.generateOrders"
+         */
+        static String find() {
+            return StackWalker.getInstance().walk(frames -> {
+                String service = null;
+                String repository = null;
+                String application = null;
+                for (StackWalker.StackFrame frame : (Iterable<StackWalker.StackFrame>) frames::iterator) {
+                    String className = frame.getClassName();
+                    if (className.startsWith("org.apiary.service.impl.")) {
+                        service = describe(frame);
+                    } else if (className.startsWith("org.apiary.repository.impl.")) {
+                        repository = describe(frame);
+                    } else if (className.startsWith("org.apiary.") && !className.startsWith("org.apiary.config.")
+                            && !className.startsWith("org.apiary.metrics.")
+                            && !className.startsWith("org.apiary.repository.")) {
+                        application = describe(frame);
+                    }
+                }
+                String caller = service != null ? service : application;
+                if (caller == null) {
+                    return repository != null ? repository : "unknown";
+                }
+                return repository != null ? caller + " via " + repository : caller;
+            });
+        }
+
+        private static String describe(StackWalker.StackFrame frame) {
+            String className = frame.getClassName();
+            String method = frame.getMethodName();
+            // lambda$processPayment$3 -> processPayment
+            if (method.startsWith("lambda$")) {
+                int end = method.indexOf('$', 7);
+                method = method.substring(7, end < 0 ? method.length() : end);
+            }
+            return className.substring(className.lastIndexOf('.') + 1) + "." + method;
+        }
+    }
+}
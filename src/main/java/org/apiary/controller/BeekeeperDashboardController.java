@@ -30,9 +30,11 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 public class BeekeeperDashboardController implements Observer<EntityChangeEvent<?>> {
 
@@ -96,6 +98,8 @@ public class BeekeeperDashboardController implements Observer<EntityChangeEvent<
 
     // Observable lists
     private ObservableList<Apiary> apiaries;
+    private Map<Integer, Long> hiveCountsByApiary = Map.of();
+    private Map<Integer, Long> productCountsByApiary = Map.of();
     private ObservableList<Hive> hives;
     private ObservableList<HoneyProduct> products;
     private ObservableList<Order> orders;
@@ -196,7 +200,7 @@ public class BeekeeperDashboardController implements Observer<EntityChangeEvent<
             Apiary apiary = cellData.getValue();
             return javafx.beans.binding.Bindings.createObjectBinding(() -> {
                 try {
-                    return (int) hiveService.countByApiary(apiary);
+                    return hiveCountsByApiary.getOrDefault(apiary.getApiaryId(), 0L).intValue();
                 } catch (Exception e) {
                     return 0;
                 }
@@ -207,7 +211,7 @@ public class BeekeeperDashboardController implements Observer<EntityChangeEvent<
             Apiary apiary = cellData.getValue();
             return javafx.beans.binding.Bindings.createObjectBinding(() -> {
                 try {
-                    return (int) honeyProductService.countProductsByApiary(apiary.getApiaryId());
+                    return productCountsByApiary.getOrDefault(apiary.getApiaryId(), 0L).intValue();
                 } catch (Exception e) {
                     return 0;
                 }
@@ -430,6 +434,8 @@ public class BeekeeperDashboardController implements Observer<EntityChangeEvent<
     private void loadApiaries() {
         try {
             List<Apiary> beekeeperApiaries = apiaryService.findByBeekeeper(beekeeper);
+            hiveCountsByApiary = hiveService.countByApiaries(apiaryIds(beekeeperApiaries));
+            productCountsByApiary = honeyProductService.countProductsByApiaries(apiaryIds(beekeeperApiaries));
             apiaries.setAll(beekeeperApiaries);
 
             // Update apiary filter combo boxes
@@ -451,6 +457,11 @@ public class BeekeeperDashboardController implements Observer<EntityChangeEvent<
         }
     }
 
+    // The count columns use one grouped count query for the whole table instead of one query per row
+    private List<Integer> apiaryIds(List<Apiary> apiaryList) {
+        return apiaryList.stream().map(Apiary::getApiaryId).collect(Collectors.toList());
+    }
+
     private void loadHives() {
         Apiary selectedApiary = apiaryFilterComboBox.getValue();
         if (selectedApiary != null) {
@@ -1,13 +1,19 @@
 package org.apiary.controller;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import org.apiary.model.Client;
+import org.apiary.model.Order;
+import org.apiary.service.OrderQueuedException;
 import org.apiary.service.ServiceFactory;
 import org.apiary.service.interfaces.OrderService;
 import org.apiary.service.interfaces.ShoppingCartService;
 
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,6 +47,12 @@ public class CheckoutController {
     private ShoppingCartService shoppingCartService;
     private OrderService orderService;
 
+    // The order placed at this checkout while its payment has not gone through
+    private Order pendingOrder;
+    // The current payment attempt: kept while its outcome is unknown, so trying again does
+    // not charge twice, and replaced after a decline so another card can be tried
+    private String paymentAttemptKey;
+
     @FXML
     private void initialize() {
         shoppingCartService = ServiceFactory.getShoppingCartService();
@@ -116,26 +128,73 @@ public class CheckoutController {
 
     @FXML
     private void handlePlaceOrder() {
-        try {
-            // Create order from cart
-            var order = orderService.createOrderFromCart(client);
-            if (order != null) {
-                // Process payment
-                boolean paymentSuccess = orderService.processPayment(order.getOrderId());
-                if (paymentSuccess) {
-                    orderNumberLabel.setText("Order #" + order.getOrderId());
-                    confirmationTotalLabel.setText(order.getTotal() + " RON");
-                    showStep(4);
-                } else {
-                    showAlert(Alert.AlertType.ERROR, "Payment Failed", "Payment could not be processed.");
-                }
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Order Failed", "Could not create order.");
-            }
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error placing order", e);
-            showAlert(Alert.AlertType.ERROR, "Error", "Failed to place order: " + e.getMessage());
+        // Neither the order nor the payment holds the JavaFX thread, so the window stays
+        // responsive while they complete; keep the order from being placed twice meanwhile
+        paymentPane.setDisable(true);
+        if (paymentAttemptKey == null) {
+            paymentAttemptKey = UUID.randomUUID().toString();
         }
+        String attemptKey = paymentAttemptKey;
+        // A declined order is paid again rather than placed again; its cart is already empty
+        CompletableFuture<Order> placed = pendingOrder != null
+                ? CompletableFuture.completedFuture(pendingOrder)
+                : orderService.createOrderFromCartAsync(client);
+        placed
+                .thenCompose(order -> {
+                    if (order == null) {
+                        return CompletableFuture.<Runnable>completedFuture(() ->
+                                showAlert(Alert.AlertType.ERROR, "Order Failed", "Could not create order."));
+                    }
+                    // Process payment
+                    return orderService.processPaymentAsync(order.getOrderId(), attemptKey)
+                            .handle((paymentSuccess, e) -> {
+                                if (e != null) {
+                                    // Maybe charged: keep the attempt key, so trying again is
+                                    // answered with the outcome of this attempt
+                                    LOGGER.log(Level.WARNING, "Payment outcome unknown for order: "
+                                            + order.getOrderId(), e);
+                                    return () -> {
+                                        pendingOrder = order;
+                                        showAlert(Alert.AlertType.WARNING, "Payment Not Confirmed",
+                                                "We could not confirm your payment. Please try again;"
+                                                        + " you will not be charged twice.");
+                                    };
+                                }
+                                return paymentSuccess
+                                        ? () -> {
+                                            pendingOrder = null;
+                                            paymentAttemptKey = null;
+                                            showConfirmation(order);
+                                        }
+                                        : () -> {
+                                            // Declined: the next attempt may use another card
+                                            pendingOrder = order;
+                                            paymentAttemptKey = null;
+                                            showAlert(Alert.AlertType.ERROR, "Payment Failed",
+                                                    "Payment could not be processed. Check your card details and try again.");
+                                        };
+                            });
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof OrderQueuedException) {
+                        return () -> showAlert(Alert.AlertType.INFORMATION, "Order Received",
+                                "Your order could not be placed right now, but it was received and will be placed"
+                                        + " as soon as possible. It will appear under your orders.");
+                    }
+                    LOGGER.log(Level.SEVERE, "Error placing order", e);
+                    return () -> showAlert(Alert.AlertType.ERROR, "Error", "Failed to place order: " + e.getMessage());
+                })
+                .thenAccept(result -> Platform.runLater(() -> {
+                    paymentPane.setDisable(false);
+                    result.run();
+                }));
+    }
+
+    private void showConfirmation(Order order) {
+        orderNumberLabel.setText("Order #" + order.getOrderId());
+        confirmationTotalLabel.setText(order.getTotal() + " RON");
+        showStep(4);
     }
 
     @FXML
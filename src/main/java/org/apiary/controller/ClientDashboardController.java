@@ -18,6 +18,7 @@ import javafx.stage.Stage;
 import org.apiary.model.*;
 import org.apiary.service.ServiceFactory;
 import org.apiary.service.interfaces.ApiaryService;
+import org.apiary.service.interfaces.HiveService;
 import org.apiary.service.interfaces.HoneyProductService;
 import org.apiary.service.interfaces.OrderService;
 import org.apiary.service.interfaces.ShoppingCartService;
@@ -32,9 +33,11 @@ import org.apiary.service.interfaces.UserService;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 public class ClientDashboardController implements Observer<EntityChangeEvent<?>> {
 
@@ -90,6 +93,7 @@ public class ClientDashboardController implements Observer<EntityChangeEvent<?>>
     private ShoppingCartService shoppingCartService;
     private OrderService orderService;
     private ApiaryService apiaryService;
+    private HiveService hiveService;
     private UserService userService;
 
     // Pagination state
@@ -107,6 +111,8 @@ public class ClientDashboardController implements Observer<EntityChangeEvent<?>>
     private ObservableList<CartItem> cartItems;
     private ObservableList<Order> orders;
     private ObservableList<Apiary> apiaries;
+    private Map<Integer, Long> hiveCountsByApiary = Map.of();
+    private Map<Integer, Long> productCountsByApiary = Map.of();
 
     @FXML
     private void initialize() {
@@ -115,6 +121,7 @@ public class ClientDashboardController implements Observer<EntityChangeEvent<?>>
         shoppingCartService = ServiceFactory.getShoppingCartService();
         orderService = ServiceFactory.getOrderService();
         apiaryService = ServiceFactory.getApiaryService();
+        hiveService = ServiceFactory.getHiveService();
         userService = ServiceFactory.getUserService();
 
         // Register as observer for cart and order changes
@@ -337,13 +344,13 @@ public class ClientDashboardController implements Observer<EntityChangeEvent<?>>
 
         apiaryHivesColumn.setCellValueFactory(cellData ->
                 javafx.beans.binding.Bindings.createObjectBinding(
-                        () -> cellData.getValue().getHives().size()));
+                        () -> hiveCountsByApiary.getOrDefault(cellData.getValue().getApiaryId(), 0L).intValue()));
 
         apiaryProductsColumn.setCellValueFactory(cellData -> {
             Apiary apiary = cellData.getValue();
             return javafx.beans.binding.Bindings.createStringBinding(() -> {
                 try {
-                    long productCount = honeyProductService.countProductsByApiary(apiary.getApiaryId());
+                    long productCount = productCountsByApiary.getOrDefault(apiary.getApiaryId(), 0L);
                     return productCount + " product" + (productCount != 1 ? "s" : "");
                 } catch (Exception e) {
                     return "N/A";
@@ -578,6 +585,8 @@ public class ClientDashboardController implements Observer<EntityChangeEvent<?>>
                 apiaryList = apiaryService.findAll();
             }
 
+            hiveCountsByApiary = hiveService.countByApiaries(apiaryIds(apiaryList));
+            productCountsByApiary = honeyProductService.countProductsByApiaries(apiaryIds(apiaryList));
             apiaries.setAll(apiaryList);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error loading apiaries", e);
@@ -585,6 +594,11 @@ public class ClientDashboardController implements Observer<EntityChangeEvent<?>>
         }
     }
 
+    // The count columns use one grouped count query for the whole table instead of one query per row
+    private List<Integer> apiaryIds(List<Apiary> apiaryList) {
+        return apiaryList.stream().map(Apiary::getApiaryId).collect(Collectors.toList());
+    }
+
     @FXML
     private void handleSearchApiaries() {
         loadApiaries();
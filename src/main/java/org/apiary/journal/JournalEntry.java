@@ -0,0 +1,43 @@
+package org.apiary.journal;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A checkout recorded in the OrderJournal: the client whose cart is to be ordered, and the
+ * request ID that the placed order carries, so that replaying the entry twice places it once
+ */
+public final class JournalEntry {
+
+    private final UUID requestId;
+    private final int clientId;
+    private final Instant acceptedAt;
+
+    /**
+     * @param requestId Identifies the checkout, and later the order placed for it
+     * @param clientId The client whose cart is ordered
+     * @param acceptedAt When the checkout was accepted
+     */
+    public JournalEntry(UUID requestId, int clientId, Instant acceptedAt) {
+        this.requestId = requestId;
+        this.clientId = clientId;
+        this.acceptedAt = acceptedAt;
+    }
+
+    public UUID getRequestId() {
+        return requestId;
+    }
+
+    public int getClientId() {
+        return clientId;
+    }
+
+    public Instant getAcceptedAt() {
+        return acceptedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalEntry{requestId=" + requestId + ", clientId=" + clientId + ", acceptedAt=" + acceptedAt + "}";
+    }
+}
@@ -0,0 +1,208 @@
+package org.apiary.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * One file of the OrderJournal, holding fixed-size records:
+ * <pre>
+ *   int  CRC32 of the rest of the record
+ *   int  type (ACCEPTED or DONE)
+ *   long request ID, most significant bits
+ *   long request ID, least significant bits
+ *   int  client ID
+ *   long accepted at, epoch milliseconds
+ * </pre>
+ * The file is created at its full size, zero-filled, so that forcing it only writes data.
+ * Reading stops at the first record that is empty or fails its checksum, which is also where
+ * a torn write from a crash ends, and appending continues from there. Records are written
+ * and read at explicit positions through the file channel rather than through a mapping,
+ * so a closed segment holds no handle on the file and can be deleted on every platform.
+ */
+final class JournalSegment {
+
+    static final int ACCEPTED = 1;
+    static final int DONE = 2;
+    static final int RECORD_SIZE = 36;
+
+    private final long sequence;
+    private final Path file;
+    private final FileChannel channel;
+    private final int capacity;
+    private final CRC32 crc = new CRC32();
+
+    // Where the next record is appended
+    private long position;
+
+    // Records appended and not yet forced to disk
+    private boolean dirty;
+
+    // Checkouts accepted in this segment that are not done yet
+    private int outstanding;
+
+    private JournalSegment(long sequence, Path file, int size) throws IOException {
+        this.sequence = sequence;
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.capacity = size / RECORD_SIZE * RECORD_SIZE;
+    }
+
+    /**
+     * Create a new, empty segment
+     * @param directory The journal directory
+     * @param sequence The sequence number of the segment, which orders segments
+     * @param size The size of the file in bytes
+     * @return The segment, positioned at its start
+     * @throws IOException if the file cannot be created
+     */
+    static JournalSegment create(Path directory, long sequence, int size) throws IOException {
+        Path file = directory.resolve(fileName(sequence));
+        Files.deleteIfExists(file);
+        JournalSegment segment = new JournalSegment(sequence, file, size);
+        try {
+            segment.fill(size);
+        } catch (IOException e) {
+            segment.close();
+            throw e;
+        }
+        return segment;
+    }
+
+    /**
+     * Open an existing segment; read its records before appending to it
+     * @param file The segment file
+     * @param sequence The sequence number of the segment
+     * @return The segment, positioned at its start
+     * @throws IOException if the file cannot be opened
+     */
+    static JournalSegment open(Path file, long sequence) throws IOException {
+        return new JournalSegment(sequence, file, (int) Files.size(file));
+    }
+
+    static String fileName(long sequence) {
+        return String.format("orders-%020d.journal", sequence);
+    }
+
+    private void fill(int size) throws IOException {
+        ByteBuffer zeros = ByteBuffer.allocate(Math.min(size, 64 * 1024));
+        long written = 0;
+        while (written < size) {
+            zeros.clear().limit((int) Math.min(zeros.capacity(), size - written));
+            written += channel.write(zeros, written);
+        }
+    }
+
+    /**
+     * Read the records of the segment, leaving it positioned after the last valid one
+     * @param reader Receives the type and entry of every valid record, in order
+     * @throws IOException if the file cannot be read
+     */
+    void read(BiConsumer<Integer, JournalEntry> reader) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        while (position + RECORD_SIZE <= capacity) {
+            record.clear();
+            while (record.hasRemaining()) {
+                if (channel.read(record, position + record.position()) < 0) {
+                    return;
+                }
+            }
+            record.flip();
+            int checksum = record.getInt();
+            int type = record.getInt();
+            if ((type != ACCEPTED && type != DONE) || checksum != checksum(record.array())) {
+                return;
+            }
+            UUID requestId = new UUID(record.getLong(), record.getLong());
+            int clientId = record.getInt();
+            Instant acceptedAt = Instant.ofEpochMilli(record.getLong());
+            reader.accept(type, new JournalEntry(requestId, clientId, acceptedAt));
+            position += RECORD_SIZE;
+        }
+    }
+
+    /**
+     * Append a record, without forcing it to disk
+     * @param type ACCEPTED or DONE
+     * @param entry The checkout
+     * @return false if the segment is full
+     * @throws IOException if the record cannot be written
+     */
+    boolean append(int type, JournalEntry entry) throws IOException {
+        if (position + RECORD_SIZE > capacity) {
+            return false;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putInt(0)
+                .putInt(type)
+                .putLong(entry.getRequestId().getMostSignificantBits())
+                .putLong(entry.getRequestId().getLeastSignificantBits())
+                .putInt(entry.getClientId())
+                .putLong(entry.getAcceptedAt().toEpochMilli());
+        record.putInt(0, checksum(record.array()));
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record, position + record.position());
+        }
+        position += RECORD_SIZE;
+        dirty = true;
+        return true;
+    }
+
+    private int checksum(byte[] record) {
+        crc.reset();
+        crc.update(record, Integer.BYTES, RECORD_SIZE - Integer.BYTES);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Check for records appended since the last call, and forget them
+     * @return true if records were appended
+     */
+    boolean takeDirty() {
+        boolean wasDirty = dirty;
+        dirty = false;
+        return wasDirty;
+    }
+
+    /**
+     * Write the records to the disk; may run while records are appended
+     * @throws IOException if the file cannot be forced
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    void accepted() {
+        outstanding++;
+    }
+
+    void done() {
+        outstanding--;
+    }
+
+    boolean hasOutstanding() {
+        return outstanding > 0;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+}
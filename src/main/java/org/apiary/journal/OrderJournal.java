@@ -0,0 +1,294 @@
+package org.apiary.journal;
+
+import org.apiary.metrics.Counter;
+import org.apiary.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Local write-ahead journal of accepted checkouts, so that an order is not lost while the
+ * database cannot take it. A checkout is appended as an ACCEPTED record and, once the order
+ * is in the database, marked with a DONE record; on start the checkouts accepted but not done
+ * are read back for replay.
+ * <ul>
+ *   <li>Records go to segment files of segmentBytes each in the journal directory (see
+ *       JournalSegment); a full segment is followed by a new one, and segments whose
+ *       checkouts are all done are deleted, oldest first.</li>
+ *   <li>An accepted checkout is only acknowledged once it is on disk. One sync thread forces
+ *       the segments, so all the checkouts appended while a sync runs share the next one.
+ *       The same thread deletes the segments that are done, so none is closed while it is
+ *       being forced.</li>
+ *   <li>A checkout that cannot be placed is moved to the dead letters, one tab-separated line
+ *       per checkout (time, request ID, client ID, reason) in DEAD_LETTER_FILE, and marked
+ *       done, so its segment can still be deleted.</li>
+ * </ul>
+ */
+public final class OrderJournal {
+
+    private static final Logger LOGGER = Logger.getLogger(OrderJournal.class.getName());
+
+    /** The dead letters, in the journal directory */
+    public static final String DEAD_LETTER_FILE = "dead-letters.log";
+
+    private final Path directory;
+    private final int segmentBytes;
+
+    // Segments from oldest to current, and the segment holding each checkout not done yet
+    private final Deque<JournalSegment> segments = new ArrayDeque<>();
+    private final Map<UUID, JournalSegment> outstanding = new HashMap<>();
+    private final List<JournalEntry> recovered = new ArrayList<>();
+    private final Object deadLetterLock = new Object();
+
+    // Checkouts appended since the last sync, acknowledged by the next one
+    private List<Acknowledgement> unsynced = new ArrayList<>();
+
+    private final Counter syncs;
+    private final Counter accepted;
+
+    /**
+     * Open the journal, reading back the checkouts that are not done
+     * @param directory The journal directory, created if missing
+     * @param segmentBytes The size of a segment file
+     * @throws IOException if the directory or its segments cannot be read
+     */
+    public OrderJournal(Path directory, int segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = Math.max(segmentBytes, JournalSegment.RECORD_SIZE * 64);
+        Files.createDirectories(directory);
+        recover();
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        this.syncs = registry.counter("orders.journal.syncs");
+        this.accepted = registry.counter("orders.journal.accepted");
+        registry.gauge("orders.journal.outstanding", this::getOutstandingCount);
+
+        Thread syncer = new Thread(this::sync, "order-journal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    private void recover() throws IOException {
+        Map<UUID, JournalEntry> pending = new LinkedHashMap<>();
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().matches("orders-\\d{20}\\.journal"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            long sequence = Long.parseLong(file.getFileName().toString().substring(7, 27));
+            JournalSegment segment = JournalSegment.open(file, sequence);
+            segment.read((type, entry) -> {
+                if (type == JournalSegment.ACCEPTED) {
+                    pending.put(entry.getRequestId(), entry);
+                    outstanding.put(entry.getRequestId(), segment);
+                    segment.accepted();
+                } else {
+                    pending.remove(entry.getRequestId());
+                    JournalSegment holder = outstanding.remove(entry.getRequestId());
+                    if (holder != null) {
+                        holder.done();
+                    }
+                }
+            });
+            segments.add(segment);
+        }
+        if (segments.isEmpty()) {
+            segments.add(JournalSegment.create(directory, 1, segmentBytes));
+        }
+        recovered.addAll(pending.values());
+        if (!recovered.isEmpty()) {
+            LOGGER.warning(recovered.size() + " accepted checkouts were not placed yet and will be replayed");
+        }
+        deleteDoneSegments();
+    }
+
+    /**
+     * Get the checkouts that were accepted but not done when the journal was opened
+     * @return The checkouts, in the order they were accepted
+     */
+    public List<JournalEntry> getRecovered() {
+        return List.copyOf(recovered);
+    }
+
+    /**
+     * Record a checkout
+     * @param requestId Identifies the checkout and the order placed for it
+     * @param clientId The client whose cart is ordered
+     * @return The entry, once it is on disk
+     */
+    public CompletableFuture<JournalEntry> accept(UUID requestId, int clientId) {
+        JournalEntry entry = new JournalEntry(requestId, clientId, Instant.now());
+        CompletableFuture<JournalEntry> acknowledged = new CompletableFuture<>();
+        try {
+            synchronized (this) {
+                JournalSegment segment = append(JournalSegment.ACCEPTED, entry);
+                outstanding.put(requestId, segment);
+                segment.accepted();
+                unsynced.add(new Acknowledgement(entry, acknowledged));
+                notifyAll();
+            }
+            accepted.increment();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error recording checkout in the order journal: " + entry, e);
+            acknowledged.completeExceptionally(e);
+        }
+        return acknowledged;
+    }
+
+    /**
+     * Record that the order of a checkout is in the database. Not forced to disk: if the
+     * record is lost, the checkout is replayed and found to be placed already.
+     * @param requestId The checkout
+     */
+    public void done(UUID requestId) {
+        try {
+            synchronized (this) {
+                JournalSegment holder = outstanding.remove(requestId);
+                if (holder == null) {
+                    return;
+                }
+                append(JournalSegment.DONE, new JournalEntry(requestId, 0, Instant.now()));
+                holder.done();
+                if (hasDoneSegments()) {
+                    // Deleted by the sync thread
+                    notifyAll();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error marking checkout done in the order journal: " + requestId, e);
+        }
+    }
+
+    /**
+     * Move a checkout that cannot be placed to the dead letters, forced to disk, and mark it done
+     * @param requestId The checkout
+     * @param clientId The client whose cart was to be ordered
+     * @param reason Why the checkout cannot be placed
+     * @return true if the checkout was moved, false if the dead letters could not be written,
+     * in which case it stays in the journal
+     */
+    public boolean deadLetter(UUID requestId, int clientId, String reason) {
+        String line = Instant.now() + "\t" + requestId + "\t" + clientId + "\t"
+                + reason.replaceAll("\\s+", " ") + System.lineSeparator();
+        try {
+            // Not under the journal's lock, which would hold up checkouts while the line is forced
+            synchronized (deadLetterLock) {
+                Files.write(directory.resolve(DEAD_LETTER_FILE), line.getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error writing dead letter of the order journal: " + requestId, e);
+            return false;
+        }
+        done(requestId);
+        return true;
+    }
+
+    /**
+     * Get the number of checkouts accepted and not done
+     * @return The number of checkouts
+     */
+    public synchronized int getOutstandingCount() {
+        return outstanding.size();
+    }
+
+    private JournalSegment append(int type, JournalEntry entry) throws IOException {
+        JournalSegment current = segments.getLast();
+        if (current.append(type, entry)) {
+            return current;
+        }
+        // Full: the records so far are forced by the next sync, which still sees the old segment
+        JournalSegment next = JournalSegment.create(directory, current.getSequence() + 1, segmentBytes);
+        segments.add(next);
+        if (!next.append(type, entry)) {
+            throw new IllegalStateException("Journal record does not fit in an empty segment");
+        }
+        return next;
+    }
+
+    private boolean hasDoneSegments() {
+        return segments.size() > 1 && !segments.getFirst().hasOutstanding();
+    }
+
+    private void deleteDoneSegments() {
+        while (hasDoneSegments()) {
+            JournalSegment oldest = segments.removeFirst();
+            try {
+                oldest.delete();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not delete order journal segment " + oldest.getSequence(), e);
+            }
+        }
+    }
+
+    private void sync() {
+        while (true) {
+            List<Acknowledgement> batch;
+            List<JournalSegment> dirty = new ArrayList<>();
+            synchronized (this) {
+                while (unsynced.isEmpty() && !hasDoneSegments()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                batch = unsynced;
+                unsynced = new ArrayList<>();
+                for (JournalSegment segment : segments) {
+                    if (segment.takeDirty()) {
+                        dirty.add(segment);
+                    }
+                }
+            }
+
+            // Appends carry on into the next batch while this one is forced
+            if (!batch.isEmpty() || !dirty.isEmpty()) {
+                try {
+                    for (JournalSegment segment : dirty) {
+                        segment.force();
+                    }
+                    syncs.increment();
+                    batch.forEach(acknowledgement -> acknowledgement.future.complete(acknowledgement.entry));
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.SEVERE, "Error syncing the order journal", e);
+                    batch.forEach(acknowledgement -> acknowledgement.future.completeExceptionally(e));
+                }
+            }
+
+            synchronized (this) {
+                deleteDoneSegments();
+            }
+        }
+    }
+
+    private static final class Acknowledgement {
+        private final JournalEntry entry;
+        private final CompletableFuture<JournalEntry> future;
+
+        private Acknowledgement(JournalEntry entry, CompletableFuture<JournalEntry> future) {
+            this.entry = entry;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.apiary.metrics;
+
+/**
+ * JMX view of a Counter
+ */
+public interface CounterMBean {
+
+    long getCount();
+}
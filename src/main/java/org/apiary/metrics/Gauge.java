@@ -0,0 +1,40 @@
+package org.apiary.metrics;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A value read when it is reported, e.g. the busy connections of the pool
+ */
+public final class Gauge implements GaugeMBean {
+
+    private static final Logger LOGGER = Logger.getLogger(Gauge.class.getName());
+
+    private final String name;
+    private final Supplier<? extends Number> value;
+
+    Gauge(String name, Supplier<? extends Number> value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Read the value
+     * @return The value, or NaN if it could not be read
+     */
+    @Override
+    public double getValue() {
+        try {
+            Number current = value.get();
+            return current == null ? Double.NaN : current.doubleValue();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Error reading gauge: " + name, e);
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.apiary.metrics;
+
+/**
+ * JMX view of a Gauge
+ */
+public interface GaugeMBean {
+
+    double getValue();
+}
@@ -0,0 +1,218 @@
+package org.apiary.metrics;
+
+import org.apiary.config.AppConfig;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds the application's timers, counters and gauges by name.
+ * Every metric is registered as an MBean under org.apiary:type=Timer|Counter|Gauge,name=...
+ * (metrics.jmx.enabled), and once started the registry logs a snapshot every
+ * metrics.logIntervalSeconds: the latency percentiles of the timers called in the
+ * interval, then the counters and gauges. A value of 0 turns the snapshot log off.
+ */
+public final class MetricsRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(MetricsRegistry.class.getName());
+    public static final String JMX_DOMAIN = "org.apiary";
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry(AppConfig.getInstance());
+
+    private final boolean enabled;
+    private final boolean jmxEnabled;
+    private final int logIntervalSeconds;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService reporter;
+
+    private MetricsRegistry(AppConfig config) {
+        this.enabled = config.isMetricsEnabled();
+        this.jmxEnabled = config.isMetricsJmxEnabled();
+        this.logIntervalSeconds = config.getMetricsLogIntervalSeconds();
+    }
+
+    /**
+     * Get the application's metrics
+     * @return The registry
+     */
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Check if metrics are collected (metrics.enabled); callers skip their instrumentation if not
+     * @return true if metrics are collected
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get a timer, creating it on first use
+     * @param name The name of the timer
+     * @return The timer
+     */
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, key -> register("Timer", key, new Timer(key)));
+    }
+
+    /**
+     * Get a counter, creating it on first use
+     * @param name The name of the counter
+     * @return The counter
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> register("Counter", key, new Counter(key)));
+    }
+
+    /**
+     * Register a gauge, replacing any gauge with the same name
+     * @param name The name of the gauge
+     * @param value Reads the current value
+     * @return The gauge
+     */
+    public Gauge gauge(String name, Supplier<? extends Number> value) {
+        return gauges.compute(name, (key, existing) -> {
+            if (existing != null) {
+                unregister("Gauge", key);
+            }
+            return register("Gauge", key, new Gauge(key, value));
+        });
+    }
+
+    /**
+     * Register an MBean that is not a metric, under org.apiary:type=&lt;type&gt;
+     * @param type The type of the MBean
+     * @param mbean The MBean
+     */
+    public void registerMBean(String type, Object mbean) {
+        if (!jmxEnabled) {
+            return;
+        }
+        try {
+            export(new ObjectName(JMX_DOMAIN + ":type=" + type), mbean);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Error registering MBean: " + type, e);
+        }
+    }
+
+    /**
+     * Start logging snapshots every metrics.logIntervalSeconds
+     */
+    public synchronized void start() {
+        if (!enabled || logIntervalSeconds <= 0 || reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::logSnapshot, logIntervalSeconds, logIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop logging snapshots, logging a last one for the unfinished interval
+     */
+    public synchronized void stop() {
+        if (reporter == null) {
+            return;
+        }
+        reporter.shutdownNow();
+        reporter = null;
+        logSnapshot();
+    }
+
+    /**
+     * Log the timers called since the last snapshot, the counters and the gauges, and start
+     * a new interval for the timer percentiles
+     */
+    public void logSnapshot() {
+        try {
+            StringBuilder snapshot = new StringBuilder("Metrics snapshot");
+            for (Timer timer : new TreeMap<>(timers).values()) {
+                LatencyHistogram interval = timer.rotate();
+                if (interval.getCount() == 0) {
+                    continue;
+                }
+                snapshot.append(String.format(Locale.ROOT,
+                        "%n  %s: %d calls, mean %.2f ms, p50 %.2f, p95 %.2f, p99 %.2f, max %.2f ms",
+                        timer.getName(), interval.getCount(), interval.getMean() / 1000,
+                        interval.getValueAtPercentile(50) / 1000.0, interval.getValueAtPercentile(95) / 1000.0,
+                        interval.getValueAtPercentile(99) / 1000.0, interval.getMax() / 1000.0));
+            }
+            for (Counter counter : new TreeMap<>(counters).values()) {
+                snapshot.append(String.format(Locale.ROOT, "%n  %s: %d", counter.getName(), counter.getCount()));
+            }
+            for (Gauge gauge : new TreeMap<>(gauges).values()) {
+                snapshot.append(String.format(Locale.ROOT, "%n  %s: %s", gauge.getName(), format(gauge.getValue())));
+            }
+            LOGGER.info(snapshot.toString());
+        } catch (RuntimeException e) {
+            // Keep the reporter running
+            LOGGER.log(Level.SEVERE, "Error logging metrics snapshot", e);
+        }
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return String.valueOf((long) value);
+        }
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private <M> M register(String type, String name, M metric) {
+        if (!jmxEnabled) {
+            return metric;
+        }
+        try {
+            export(objectName(type, name), metric);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Error registering MBean for metric: " + name, e);
+        }
+        return metric;
+    }
+
+    private static void export(ObjectName objectName, Object mbean) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(mbean, objectName);
+    }
+
+    private void unregister(String type, String name) {
+        if (!jmxEnabled) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(type, name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Error unregistering MBean for metric: " + name, e);
+        }
+    }
+
+    private static ObjectName objectName(String type, String name) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }
+}
@@ -0,0 +1,78 @@
+package org.apiary.metrics;
+
+import com.mchange.v2.c3p0.C3P0Registry;
+import com.mchange.v2.c3p0.PooledDataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import java.sql.SQLException;
+import java.util.function.ToLongFunction;
+
+/**
+ * Gauges over the persistence layer: Hibernate statistics (statement, query, entity,
+ * second-level cache and optimistic lock failure counts) and the C3P0 connection pools.
+ * The Hibernate gauges read 0 unless hibernate.generate_statistics is set.
+ */
+public final class PersistenceMetrics {
+
+    // Prevent instantiation
+    private PersistenceMetrics() {
+    }
+
+    /**
+     * Register the persistence gauges
+     * @param sessionFactory The session factory to read the statistics of
+     */
+    public static void register(SessionFactory sessionFactory) {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        if (!registry.isEnabled()) {
+            return;
+        }
+        Statistics statistics = sessionFactory.getStatistics();
+        hibernate(registry, statistics, "hibernate.sessions.opened", Statistics::getSessionOpenCount);
+        hibernate(registry, statistics, "hibernate.transactions", Statistics::getTransactionCount);
+        hibernate(registry, statistics, "hibernate.statements.prepared", Statistics::getPrepareStatementCount);
+        hibernate(registry, statistics, "hibernate.queries.executed", Statistics::getQueryExecutionCount);
+        hibernate(registry, statistics, "hibernate.queries.maxTimeMillis", Statistics::getQueryExecutionMaxTime);
+        hibernate(registry, statistics, "hibernate.entities.loaded", Statistics::getEntityLoadCount);
+        hibernate(registry, statistics, "hibernate.entities.fetched", Statistics::getEntityFetchCount);
+        hibernate(registry, statistics, "hibernate.entities.inserted", Statistics::getEntityInsertCount);
+        hibernate(registry, statistics, "hibernate.entities.updated", Statistics::getEntityUpdateCount);
+        hibernate(registry, statistics, "hibernate.collections.fetched", Statistics::getCollectionFetchCount);
+        hibernate(registry, statistics, "hibernate.flushes", Statistics::getFlushCount);
+        hibernate(registry, statistics, "hibernate.optimisticFailures", Statistics::getOptimisticFailureCount);
+        hibernate(registry, statistics, "hibernate.cache.hits", Statistics::getSecondLevelCacheHitCount);
+        hibernate(registry, statistics, "hibernate.cache.misses", Statistics::getSecondLevelCacheMissCount);
+        hibernate(registry, statistics, "hibernate.cache.puts", Statistics::getSecondLevelCachePutCount);
+
+        pool(registry, "pool.connections.busy", PooledDataSource::getNumBusyConnectionsAllUsers);
+        pool(registry, "pool.connections.idle", PooledDataSource::getNumIdleConnectionsAllUsers);
+        pool(registry, "pool.connections.total", PooledDataSource::getNumConnectionsAllUsers);
+        pool(registry, "pool.threadsAwaitingCheckout", PooledDataSource::getNumThreadsAwaitingCheckoutDefaultUser);
+    }
+
+    private static void hibernate(MetricsRegistry registry, Statistics statistics, String name,
+                                  ToLongFunction<Statistics> value) {
+        registry.gauge(name, () -> value.applyAsLong(statistics));
+    }
+
+    private static void pool(MetricsRegistry registry, String name, PoolReading reading) {
+        // Summed over all pools; there is one per session factory
+        registry.gauge(name, () -> {
+            long total = 0;
+            for (Object source : C3P0Registry.getPooledDataSources()) {
+                try {
+                    total += reading.read((PooledDataSource) source);
+                } catch (SQLException e) {
+                    return Double.NaN;
+                }
+            }
+            return total;
+        });
+    }
+
+    @FunctionalInterface
+    private interface PoolReading {
+        int read(PooledDataSource pool) throws SQLException;
+    }
+}
@@ -0,0 +1,224 @@
+package org.apiary.metrics;
+
+import org.apiary.config.AppConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Records SQL statements slower than sql.slow.thresholdMillis, as reported by
+ * SlowQueryConnectionProvider (see HibernateConfig), with their bound parameters, elapsed
+ * time, rows and the service and repository methods that issued them.
+ * <ul>
+ *   <li>Every slow statement is written to a rotating log, sql.slow.logDir/slow-queries.N.log
+ *       (sql.slow.logMaxBytes per file, sql.slow.logFiles files).</li>
+ *   <li>Statements are grouped by SQL text, and the sql.slow.topN worst by maximum time are
+ *       available over JMX (org.apiary:type=SlowQueryLog) and logged on shutdown.</li>
+ * </ul>
+ */
+public final class SlowQueryLog implements SlowQueryLogMBean {
+
+    private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+    private static final Logger STATEMENT_LOGGER = Logger.getLogger("org.apiary.sql.slow");
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    // Distinct statements kept for the top-N table; Hibernate generates a bounded set of SQL
+    private static final int MAX_STATEMENTS = 1_000;
+    private static final int MAX_SQL_LENGTH = 300;
+
+    private static SlowQueryLog instance;
+
+    private final long thresholdNanos;
+    private final int topN;
+    private final Map<String, SlowStatement> statements = new ConcurrentHashMap<>();
+    private final LongAdder slowCount = new LongAdder();
+
+    private SlowQueryLog(AppConfig config) {
+        long thresholdMillis = config.getSlowQueryThresholdMillis();
+        this.thresholdNanos = thresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.topN = config.getSlowQueryTopN();
+        if (isEnabled()) {
+            openLogFile(config);
+        }
+    }
+
+    /**
+     * Get the slow query log, creating it on first use
+     * @return The slow query log
+     */
+    public static synchronized SlowQueryLog getInstance() {
+        if (instance == null) {
+            instance = new SlowQueryLog(AppConfig.getInstance());
+            if (instance.isEnabled()) {
+                MetricsRegistry registry = MetricsRegistry.getInstance();
+                registry.registerMBean("SlowQueryLog", instance);
+                registry.gauge("sql.slowStatements", instance::getSlowStatementCount);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Check if slow statements are recorded (sql.slow.thresholdMillis is 0 or more)
+     * @return true if slow statements are recorded
+     */
+    public boolean isEnabled() {
+        return thresholdNanos >= 0;
+    }
+
+    /**
+     * Check if a statement is slow enough to record
+     * @param elapsedNanos The time the statement took
+     * @return true if the statement should be recorded
+     */
+    public boolean isSlow(long elapsedNanos) {
+        return thresholdNanos >= 0 && elapsedNanos >= thresholdNanos;
+    }
+
+    /**
+     * Record a slow statement
+     * @param sql The SQL, with ? placeholders
+     * @param parameters The bound parameters, as text
+     * @param elapsedNanos The time from execution until the results were read
+     * @param rows The rows read or updated, or -1 if unknown
+     * @param callSite The service and repository methods that issued the statement
+     */
+    public void record(String sql, String parameters, long elapsedNanos, int rows, String callSite) {
+        slowCount.increment();
+        String singleLine = sql.replaceAll("\\s+", " ").trim();
+        STATEMENT_LOGGER.info(String.format(Locale.ROOT, "%.1f ms, %d rows, %s: %s %s",
+                elapsedNanos / 1e6, rows, callSite, singleLine, parameters));
+
+        SlowStatement statement = statements.get(singleLine);
+        if (statement == null && statements.size() < MAX_STATEMENTS) {
+            statement = statements.computeIfAbsent(singleLine, SlowStatement::new);
+        }
+        if (statement != null) {
+            statement.record(parameters, elapsedNanos, rows, callSite);
+        }
+    }
+
+    @Override
+    public long getSlowStatementCount() {
+        return slowCount.sum();
+    }
+
+    @Override
+    public long getThresholdMillis() {
+        return thresholdNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    @Override
+    public String[] getTopStatements() {
+        return topStatements().stream().map(SlowStatement::toString).toArray(String[]::new);
+    }
+
+    @Override
+    public void reset() {
+        statements.clear();
+        slowCount.reset();
+    }
+
+    /**
+     * Log the worst statements recorded so far
+     */
+    public void logSummary() {
+        if (!isEnabled() || statements.isEmpty()) {
+            return;
+        }
+        String separator = System.lineSeparator() + "  ";
+        LOGGER.info(slowCount.sum() + " statements over " + getThresholdMillis() + " ms, worst:" + separator
+                + topStatements().stream().map(SlowStatement::toString).collect(Collectors.joining(separator)));
+    }
+
+    private List<SlowStatement> topStatements() {
+        return statements.values().stream()
+                .sorted(Comparator.comparingLong(SlowStatement::getMaxNanos).reversed())
+                .limit(topN)
+                .collect(Collectors.toList());
+    }
+
+    private void openLogFile(AppConfig config) {
+        try {
+            Path directory = Paths.get(config.getSlowQueryLogDir());
+            Files.createDirectories(directory);
+            FileHandler handler = new FileHandler(directory.resolve("slow-queries.%g.log").toString(),
+                    config.getSlowQueryLogMaxBytes(), config.getSlowQueryLogFiles(), true);
+            handler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(record.getMillis()),
+                            ZoneId.systemDefault());
+                    return TIMESTAMP.format(time) + " " + record.getMessage() + System.lineSeparator();
+                }
+            });
+            STATEMENT_LOGGER.addHandler(handler);
+            STATEMENT_LOGGER.setUseParentHandlers(false);
+        } catch (IOException | RuntimeException e) {
+            // Statements still reach the console and the top-N table
+            LOGGER.log(Level.WARNING, "Could not open the slow query log in " + config.getSlowQueryLogDir(), e);
+        }
+    }
+
+    /**
+     * The slow executions of one SQL statement
+     */
+    private static final class SlowStatement {
+        private final String sql;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private long maxNanos;
+        private String worstParameters;
+        private String worstCallSite;
+        private int worstRows;
+
+        SlowStatement(String sql) {
+            this.sql = sql;
+        }
+
+        void record(String parameters, long elapsedNanos, int rows, String callSite) {
+            count.increment();
+            totalNanos.add(elapsedNanos);
+            synchronized (this) {
+                if (elapsedNanos > maxNanos) {
+                    maxNanos = elapsedNanos;
+                    worstParameters = parameters;
+                    worstCallSite = callSite;
+                    worstRows = rows;
+                }
+            }
+        }
+
+        synchronized long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public synchronized String toString() {
+            long calls = count.sum();
+            String shortSql = sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH) + "...";
+            return String.format(Locale.ROOT, "max %.1f ms, mean %.1f ms over %d, %d rows, %s: %s %s",
+                    maxNanos / 1e6, calls == 0 ? 0 : totalNanos.sum() / 1e6 / calls, calls, worstRows,
+                    worstCallSite, shortSql, worstParameters);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.apiary.metrics;
+
+/**
+ * JMX view of the SlowQueryLog
+ */
+public interface SlowQueryLogMBean {
+
+    long getSlowStatementCount();
+
+    long getThresholdMillis();
+
+    /**
+     * @return The worst statements by maximum time, with the parameters and call site of the worst run
+     */
+    String[] getTopStatements();
+
+    void reset();
+}
@@ -0,0 +1,95 @@
+package org.apiary.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency of an operation, e.g. a service method. Durations are kept in microseconds in
+ * a LatencyHistogram per snapshot interval, so the percentiles describe recent load
+ * instead of being flattened by everything since startup.
+ */
+public final class Timer implements TimerMBean {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+    private final AtomicReference<LatencyHistogram> current = new AtomicReference<>(new LatencyHistogram());
+    private volatile LatencyHistogram previous;
+
+    Timer(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record a duration
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+        current.get().record(micros);
+    }
+
+    /**
+     * End the current interval and start a new one
+     * @return The durations recorded in the interval that ended, in microseconds
+     */
+    LatencyHistogram rotate() {
+        LatencyHistogram completed = current.getAndSet(new LatencyHistogram());
+        previous = completed;
+        return completed;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long calls = count.sum();
+        return calls == 0 ? 0 : totalMicros.sum() / 1000.0 / calls;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    @Override
+    public double get50thPercentileMillis() {
+        return percentileMillis(50);
+    }
+
+    @Override
+    public double get95thPercentileMillis() {
+        return percentileMillis(95);
+    }
+
+    @Override
+    public double get99thPercentileMillis() {
+        return percentileMillis(99);
+    }
+
+    @Override
+    public double get999thPercentileMillis() {
+        return percentileMillis(99.9);
+    }
+
+    private double percentileMillis(double percentile) {
+        LatencyHistogram recent = previous;
+        if (recent == null) {
+            recent = current.get();
+        }
+        return recent.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,23 @@
+package org.apiary.metrics;
+
+/**
+ * JMX view of a Timer. Counts and the mean are since startup; the percentiles cover the
+ * last completed snapshot interval (see MetricsRegistry), or everything recorded so far
+ * when snapshots are off.
+ */
+public interface TimerMBean {
+
+    long getCount();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    double get50thPercentileMillis();
+
+    double get95thPercentileMillis();
+
+    double get99thPercentileMillis();
+
+    double get999thPercentileMillis();
+}
@@ -0,0 +1,61 @@
+package org.apiary.metrics.jfr;
+
+import org.apiary.config.HibernateConfig;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.Page;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Reads the ids and row counts the events carry out of call arguments and results
+ */
+final class EventValues {
+
+    // Prevent instantiation
+    private EventValues() {
+    }
+
+    /**
+     * Count the rows in a result
+     * @param result A collection, page, optional, entity or update count
+     * @return The number of rows, or -1 if the result does not tell
+     */
+    static int rowCount(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Page) {
+            return ((Page<?>) result).getContent().size();
+        }
+        if (result instanceof KeysetPage) {
+            return ((KeysetPage<?>) result).getContent().size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof Integer) {
+            // executeUpdate
+            return (Integer) result;
+        }
+        return isEntity(result) ? 1 : -1;
+    }
+
+    /**
+     * Get the id of an entity, also through an Optional
+     * @param value The entity
+     * @return The id as text, or null if the value is not an entity
+     */
+    static String entityId(Object value) {
+        Object entity = value instanceof Optional ? ((Optional<?>) value).orElse(null) : value;
+        if (!isEntity(entity)) {
+            return null;
+        }
+        Object id = HibernateConfig.getSessionFactory().getPersistenceUnitUtil().getIdentifier(entity);
+        return id == null ? null : id.toString();
+    }
+
+    private static boolean isEntity(Object value) {
+        return value != null && value.getClass().getName().startsWith("org.apiary.model.");
+    }
+}
@@ -0,0 +1,51 @@
+package org.apiary.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A password hash, computed to store a new password or to verify a login
+ */
+@Name("org.apiary.PasswordHash")
+@Label("Password Hash")
+@Category({"Apiary", "Security"})
+@Description("A deliberately slow PBKDF2 password hash")
+@StackTrace(false)
+public class PasswordHashEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    @Description("hash or verify")
+    private String operation;
+
+    @Label("Algorithm")
+    private String algorithm;
+
+    @Label("Iterations")
+    private int iterations;
+
+    @Label("Succeeded")
+    @Description("The hash was computed, and for verify the password matched")
+    private boolean succeeded;
+
+    /**
+     * Fill in and commit the event, if a recording wants it
+     * @param operation hash or verify
+     * @param algorithm The key derivation algorithm
+     * @param iterations The number of iterations
+     * @param succeeded true if the hash was computed (and matched, when verifying)
+     */
+    public void complete(String operation, String algorithm, int iterations, boolean succeeded) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.operation = operation;
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+        this.succeeded = succeeded;
+        commit();
+    }
+}
@@ -0,0 +1,49 @@
+package org.apiary.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.apiary.model.Order;
+
+/**
+ * A round-trip to the payment provider
+ */
+@Name("org.apiary.Payment")
+@Label("Payment")
+@Category({"Apiary", "Payment"})
+@Description("A payment sent to the payment provider")
+@StackTrace(false)
+public class PaymentEvent extends jdk.jfr.Event {
+
+    @Label("Provider")
+    private String provider;
+
+    @Label("Order Id")
+    private int orderId;
+
+    @Label("Amount")
+    private double amount;
+
+    @Label("Succeeded")
+    private boolean succeeded;
+
+    /**
+     * Fill in and commit the event, if a recording wants it
+     * @param provider The payment provider
+     * @param order The order paid for
+     * @param succeeded true if the payment went through
+     */
+    public void complete(String provider, Order order, boolean succeeded) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.provider = provider;
+        this.orderId = order.getOrderId() == null ? 0 : order.getOrderId();
+        this.amount = order.getTotal() == null ? 0 : order.getTotal().doubleValue();
+        this.succeeded = succeeded;
+        commit();
+    }
+}
@@ -0,0 +1,80 @@
+package org.apiary.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.Set;
+
+/**
+ * A repository operation: one read or write against the database through AbstractRepository
+ */
+@Name("org.apiary.Repository")
+@Label("Repository Operation")
+@Category({"Apiary", "Persistence"})
+@Description("A read or write through a repository, with the entity type and rows returned")
+@StackTrace(false)
+public class RepositoryEvent extends jdk.jfr.Event {
+
+    // Frames between the repository method and the event
+    private static final Set<String> INTERNAL_METHODS = Set.of(
+            "inSession", "inTransaction", "inOwnTransaction", "joinUnitOfWork", "findPage", "findKeysetPage", "complete");
+
+    @Label("Entity Type")
+    private String entityType;
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Write")
+    private boolean write;
+
+    @Label("Joined Unit Of Work")
+    @Description("The operation ran in the session of an enclosing unit of work")
+    private boolean joinedUnitOfWork;
+
+    @Label("Entity Id")
+    private String entityId;
+
+    @Label("Rows")
+    @Description("Rows returned or updated, -1 if unknown")
+    private int rowCount;
+
+    @Label("Failed")
+    private boolean failed;
+
+    /**
+     * Fill in and commit the event, if a recording wants it
+     * @param entityClass The entity class of the repository
+     * @param write true for a write operation
+     * @param joinedUnitOfWork true if the operation joined a unit of work
+     * @param result The result of the operation, null if it failed
+     * @param failed true if the operation threw
+     */
+    public void complete(Class<?> entityClass, boolean write, boolean joinedUnitOfWork, Object result, boolean failed) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.entityType = entityClass.getSimpleName();
+        this.operation = callerMethod();
+        this.write = write;
+        this.joinedUnitOfWork = joinedUnitOfWork;
+        this.entityId = EventValues.entityId(result);
+        this.rowCount = failed ? -1 : EventValues.rowCount(result);
+        this.failed = failed;
+        commit();
+    }
+
+    private static String callerMethod() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> !frame.getClassName().startsWith("org.apiary.metrics.")
+                        && !INTERNAL_METHODS.contains(frame.getMethodName())
+                        && !frame.getMethodName().startsWith("lambda$"))
+                .findFirst()
+                .map(StackWalker.StackFrame::getMethodName)
+                .orElse(null));
+    }
+}
@@ -0,0 +1,96 @@
+package org.apiary.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.apiary.model.Client;
+import org.apiary.model.HoneyProduct;
+import org.apiary.model.Order;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+
+/**
+ * A call to a service method, e.g. OrderService.createOrderFromCart
+ */
+@Name("org.apiary.ServiceCall")
+@Label("Service Call")
+@Category({"Apiary", "Service"})
+@Description("A call to a service method, with the client, order and product it is about")
+@StackTrace(false)
+public class ServiceCallEvent extends jdk.jfr.Event {
+
+    @Label("Service")
+    private String service;
+
+    @Label("Method")
+    private String method;
+
+    @Label("Client Id")
+    private int clientId;
+
+    @Label("Order Id")
+    private int orderId;
+
+    @Label("Product Id")
+    private int productId;
+
+    @Label("Entity Id")
+    @Description("The first Integer argument, the id of the cart item, order or product the call is about")
+    private int entityId;
+
+    @Label("Rows")
+    @Description("Rows returned, -1 if the result is not a list or page")
+    private int rowCount;
+
+    @Label("Succeeded")
+    @Description("False if the call threw, or returned false, null or an empty Optional")
+    private boolean succeeded;
+
+    /**
+     * Fill in and commit the event, if a recording wants it
+     * @param service The service interface
+     * @param method The method called
+     * @param args The arguments, may be null
+     * @param result The result, null if the call threw
+     * @param failed true if the call threw
+     */
+    public void complete(Class<?> service, Method method, Object[] args, Object result, boolean failed) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.service = service.getSimpleName();
+        this.method = method.getName();
+        if (args != null) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            for (int i = 0; i < args.length; i++) {
+                describe(args[i]);
+                // Quantities are int, ids Integer
+                if (entityId == 0 && parameterTypes[i] == Integer.class && args[i] != null) {
+                    entityId = (Integer) args[i];
+                }
+            }
+        }
+        describe(result);
+        this.rowCount = EventValues.rowCount(result);
+        this.succeeded = !failed && (method.getReturnType() == void.class || result != null
+                && !Boolean.FALSE.equals(result) && !(result instanceof Optional && ((Optional<?>) result).isEmpty()));
+        commit();
+    }
+
+    private void describe(Object value) {
+        if (value instanceof Optional) {
+            value = ((Optional<?>) value).orElse(null);
+        }
+        if (value instanceof Client && ((Client) value).getUserId() != null) {
+            clientId = ((Client) value).getUserId();
+        } else if (value instanceof Order && ((Order) value).getOrderId() != null) {
+            orderId = ((Order) value).getOrderId();
+        } else if (value instanceof HoneyProduct && ((HoneyProduct) value).getProductId() != null) {
+            productId = ((HoneyProduct) value).getProductId();
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package org.apiary.model;
 
+import org.apiary.config.CacheConfig;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
 @Entity
-@Table(name = "Apiary")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.APIARY_REGION)
+@Table(name = "Apiary", indexes = @Index(name = "IX_Apiary_beekeeper_name", columnList = "beekeeperId, name"))
 public class Apiary {
 
     @Id
@@ -20,7 +26,7 @@ public class Apiary {
     @Column(name = "location", nullable = false)
     private String location;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "beekeeperId", nullable = false)
     private Beekeeper beekeeper;
 
@@ -119,9 +125,9 @@ public class Apiary {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof Apiary)) return false;
         Apiary apiary = (Apiary) o;
-        return Objects.equals(apiaryId, apiary.apiaryId);
+        return Objects.equals(apiaryId, apiary.getApiaryId());
     }
 
     @Override
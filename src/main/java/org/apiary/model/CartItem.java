@@ -1,23 +1,37 @@
 package org.apiary.model;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.util.Objects;
 
 @Entity
 @Table(name = "CartItem")
+@NamedEntityGraph(name = CartItem.WITH_PRODUCT_GRAPH,
+        attributeNodes = @NamedAttributeNode(value = "product", subgraph = "product"),
+        subgraphs = @NamedSubgraph(name = "product", attributeNodes = @NamedAttributeNode("apiary")))
 public class CartItem {
 
+    /** Loads the product and its apiary shown in the cart */
+    public static final String WITH_PRODUCT_GRAPH = "CartItem.withProduct";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cartItemIdGenerator")
+    @SequenceGenerator(name = "cartItemIdGenerator", sequenceName = "CartItem_seq", allocationSize = 50)
     @Column(name = "itemId")
     private Integer itemId;
 
-    @ManyToOne
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "cartId", nullable = false)
     private ShoppingCart cart;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "productId", nullable = false)
     private HoneyProduct product;
 
@@ -46,6 +60,14 @@ public class CartItem {
         this.itemId = itemId;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public ShoppingCart getCart() {
         return cart;
     }
@@ -101,9 +123,9 @@ public class CartItem {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof CartItem)) return false;
         CartItem cartItem = (CartItem) o;
-        return Objects.equals(itemId, cartItem.itemId);
+        return Objects.equals(itemId, cartItem.getItemId());
     }
 
     @Override
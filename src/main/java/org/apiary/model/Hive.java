@@ -1,14 +1,24 @@
 package org.apiary.model;
 
+import org.apiary.config.CacheConfig;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.HIVE_REGION)
 @Table(name = "Hive")
+@NamedEntityGraph(name = Hive.WITH_APIARY_GRAPH, attributeNodes = @NamedAttributeNode("apiary"))
 public class Hive {
 
+    /** Loads the apiary shown next to a hive */
+    public static final String WITH_APIARY_GRAPH = "Hive.withApiary";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "hiveId")
@@ -20,7 +30,7 @@ public class Hive {
     @Column(name = "queenYear")
     private Integer queenYear;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "apiaryId", nullable = false)
     private Apiary apiary;
 
@@ -90,9 +100,9 @@ public class Hive {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof Hive)) return false;
         Hive hive = (Hive) o;
-        return Objects.equals(hiveId, hive.hiveId);
+        return Objects.equals(hiveId, hive.getHiveId());
     }
 
     @Override
@@ -1,18 +1,43 @@
 package org.apiary.model;
 
+import org.apiary.config.CacheConfig;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.util.Objects;
 
 @Entity
-@Table(name = "HoneyProduct")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.HONEY_PRODUCT_REGION)
+@Table(name = "HoneyProduct", indexes = {
+        @Index(name = "IX_HoneyProduct_name", columnList = "name, productId"),
+        @Index(name = "IX_HoneyProduct_price", columnList = "price, productId"),
+        @Index(name = "IX_HoneyProduct_apiary", columnList = "apiaryId")
+})
+@NamedEntityGraph(name = HoneyProduct.CATALOG_GRAPH, attributeNodes = {
+        @NamedAttributeNode("apiary"),
+        @NamedAttributeNode("hive")
+})
 public class HoneyProduct {
 
+    /** Loads the apiary and hive shown next to a product in one statement */
+    public static final String CATALOG_GRAPH = "HoneyProduct.catalog";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "productId")
     private Integer productId;
 
+    // Optimistic locking: updates check and bump the version, so a concurrent writer fails
+    // instead of silently overwriting; existing rows start at 0
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @Column(name = "name", nullable = false)
     private String name;
 
@@ -25,11 +50,11 @@ public class HoneyProduct {
     @Column(name = "quantity", nullable = false, precision = 10, scale = 2)
     private BigDecimal quantity;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "apiaryId", nullable = false)
     private Apiary apiary;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "hiveId")
     private Hive hive;
 
@@ -53,6 +78,14 @@ public class HoneyProduct {
         this.productId = productId;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -108,9 +141,9 @@ public class HoneyProduct {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof HoneyProduct)) return false;
         HoneyProduct product = (HoneyProduct) o;
-        return Objects.equals(productId, product.productId);
+        return Objects.equals(productId, product.getProductId());
     }
 
     @Override
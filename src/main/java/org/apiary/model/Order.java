@@ -1,22 +1,43 @@
 package org.apiary.model;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.UUID;
 
 @Entity
-@Table(name = "Orders") // Using "Orders" instead of "Order" which might be a reserved word in some databases
+@Table(name = "Orders", // Using "Orders" instead of "Order" which might be a reserved word in some databases
+        indexes = {
+                @Index(name = "IX_Orders_client_date", columnList = "clientId, date, orderId")
+        },
+        uniqueConstraints = @UniqueConstraint(name = "UQ_Orders_requestId", columnNames = "requestId"))
+@NamedEntityGraph(name = Order.SUMMARY_GRAPH, attributeNodes = {
+        @NamedAttributeNode("client"),
+        @NamedAttributeNode("payment")
+})
 public class Order {
 
+    /** Loads the client and payment shown in order lists; items are fetched separately */
+    public static final String SUMMARY_GRAPH = "Order.summary";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence (not IDENTITY) so inserts of orders and their items can be JDBC-batched
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orderIdGenerator")
+    @SequenceGenerator(name = "orderIdGenerator", sequenceName = "Orders_seq", allocationSize = 50)
     @Column(name = "orderId")
     private Integer orderId;
 
-    @ManyToOne
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "clientId", nullable = false)
     private Client client;
 
@@ -29,6 +50,11 @@ public class Order {
     @Column(name = "status", nullable = false)
     private String status; // "PENDING", "PAID", "CANCELLED", "DELIVERED"
 
+    // Identifies the checkout the order was placed for; unique, so a replayed checkout racing
+    // the original attempt cannot place a second order
+    @Column(name = "requestId", length = 36)
+    private String requestId;
+
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<OrderItem> items = new ArrayList<>();
 
@@ -44,6 +70,8 @@ public class Order {
 
     public Order(Client client) {
         this.client = client;
+        // Replaced by the checkout's own ID when the order is placed for one
+        this.requestId = UUID.randomUUID().toString();
         this.date = LocalDateTime.now();
         this.status = "PENDING";
         this.total = BigDecimal.ZERO;
@@ -58,6 +86,14 @@ public class Order {
         this.orderId = orderId;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Client getClient() {
         return client;
     }
@@ -90,6 +126,14 @@ public class Order {
         this.status = status;
     }
 
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+
     public List<OrderItem> getItems() {
         return items;
     }
@@ -146,9 +190,9 @@ public class Order {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof Order)) return false;
         Order order = (Order) o;
-        return Objects.equals(orderId, order.orderId);
+        return Objects.equals(orderId, order.getOrderId());
     }
 
     @Override
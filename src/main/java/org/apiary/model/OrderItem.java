@@ -5,19 +5,27 @@ import java.math.BigDecimal;
 import java.util.Objects;
 
 @Entity
-@Table(name = "OrderItem")
+@Table(name = "OrderItem", indexes = {
+        @Index(name = "IX_OrderItem_order", columnList = "orderId"),
+        @Index(name = "IX_OrderItem_product", columnList = "productId, orderId")
+})
+@NamedEntityGraph(name = OrderItem.WITH_PRODUCT_GRAPH, attributeNodes = @NamedAttributeNode("product"))
 public class OrderItem {
 
+    /** Loads the product of an order line */
+    public static final String WITH_PRODUCT_GRAPH = "OrderItem.withProduct";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orderItemIdGenerator")
+    @SequenceGenerator(name = "orderItemIdGenerator", sequenceName = "OrderItem_seq", allocationSize = 50)
     @Column(name = "orderItemId")
     private Integer orderItemId;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "orderId", nullable = false)
     private Order order;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "productId", nullable = false)
     private HoneyProduct product;
 
@@ -90,9 +98,9 @@ public class OrderItem {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof OrderItem)) return false;
         OrderItem orderItem = (OrderItem) o;
-        return Objects.equals(orderItemId, orderItem.orderItemId);
+        return Objects.equals(orderItemId, orderItem.getOrderItemId());
     }
 
     @Override
@@ -4,17 +4,25 @@ import javax.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Objects;
+import java.util.UUID;
 
 @Entity
-@Table(name = "Payment")
+@Table(name = "Payment",
+        indexes = @Index(name = "IX_Payment_date", columnList = "date, transactionId"),
+        uniqueConstraints = {
+                @UniqueConstraint(name = "UQ_Payment_idempotencyKey", columnNames = "idempotencyKey"),
+                // Only payments that went through are stored, so an order is paid at most once
+                @UniqueConstraint(name = "UQ_Payment_orderId", columnNames = "orderId")
+        })
 public class Payment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "paymentIdGenerator")
+    @SequenceGenerator(name = "paymentIdGenerator", sequenceName = "Payment_seq", allocationSize = 50)
     @Column(name = "transactionId")
     private Integer transactionId;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "orderId", nullable = false)
     private Order order;
 
@@ -27,15 +35,26 @@ public class Payment {
     @Column(name = "date", nullable = false)
     private LocalDateTime date;
 
+    // Identifies the payment attempt; a repeated attempt cannot be stored twice. Never left
+    // empty, since SQL Server allows only one NULL under a unique constraint
+    @Column(name = "idempotencyKey", length = 64)
+    private String idempotencyKey;
+
     // Default constructor required by JPA
     public Payment() {
         this.date = LocalDateTime.now();
     }
 
     public Payment(Order order, BigDecimal amount, String status) {
+        // Not made by a payment attempt, e.g. generated data: a key of its own
+        this(order, amount, status, UUID.randomUUID().toString());
+    }
+
+    public Payment(Order order, BigDecimal amount, String status, String idempotencyKey) {
         this.order = order;
         this.amount = amount;
         this.status = status;
+        this.idempotencyKey = idempotencyKey;
         this.date = LocalDateTime.now();
     }
 
@@ -80,12 +99,20 @@ public class Payment {
         this.date = date;
     }
 
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof Payment)) return false;
         Payment payment = (Payment) o;
-        return Objects.equals(transactionId, payment.transactionId);
+        return Objects.equals(transactionId, payment.getTransactionId());
     }
 
     @Override
@@ -1,6 +1,16 @@
 package org.apiary.model;
 
-import java.math.BigDecimal;
+import org.apiary.config.AppConfig;
+import org.apiary.metrics.jfr.PaymentEvent;
+import org.apiary.payment.PaymentGateway;
+import org.apiary.payment.PaymentGateways;
+import org.apiary.payment.PaymentOutcomeUnknownException;
+import org.apiary.payment.PaymentRequest;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Represents an external payment system for processing payments
@@ -8,56 +18,95 @@ import java.math.BigDecimal;
  */
 public class PaymentSystem {
 
+    private static final Logger LOGGER = Logger.getLogger(PaymentSystem.class.getName());
+
     private String paymentProvider;
     private String apiKey;
+    private PaymentGateway gateway;
 
     public PaymentSystem() {
         // Default constructor
     }
 
     public PaymentSystem(String paymentProvider, String apiKey) {
+        this(paymentProvider, apiKey, PaymentGateways.create(AppConfig.getInstance()));
+    }
+
+    public PaymentSystem(String paymentProvider, String apiKey, PaymentGateway gateway) {
         this.paymentProvider = paymentProvider;
         this.apiKey = apiKey;
+        this.gateway = gateway;
     }
 
     /**
-     * Process a payment for an order
+     * Process a payment for an order, waiting for the payment provider
      * @param order The order to process payment for
      * @return true if payment is successful, false otherwise
+     * @throws java.util.concurrent.CompletionException with a PaymentOutcomeUnknownException if
+     * the provider did not answer
      */
     public boolean processPayment(Order order) {
-        // In a real application, this would integrate with a payment gateway
-        try {
-            // Simulate integration with payment processor
-            System.out.println("Processing payment with " + paymentProvider + " for Order #" + order.getOrderId());
-            System.out.println("Amount: " + order.getTotal() + " RON");
-
-            // Simulate network delay
-            Thread.sleep(1500);
-
-            // Create payment record
-            Payment payment = new Payment(order, order.getTotal(), "SUCCESS");
-            order.setPayment(payment);
-            order.setStatus("PAID");
-
-            return true;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            System.err.println("Payment processing interrupted: " + e.getMessage());
+        return processPaymentAsync(order).join();
+    }
 
-            // Create failed payment record
-            Payment payment = new Payment(order, order.getTotal(), "FAILED");
-            order.setPayment(payment);
+    /**
+     * Process a payment for an order through the payment gateway under a new reference
+     * @param order The order to process payment for
+     * @return Completes with true if payment is successful, false if it was declined, or
+     * exceptionally with a PaymentOutcomeUnknownException if the provider did not answer
+     */
+    public CompletableFuture<Boolean> processPaymentAsync(Order order) {
+        return processPaymentAsync(order, UUID.randomUUID().toString());
+    }
 
-            return false;
+    /**
+     * Process a payment for an order through the payment gateway, recorded as a PaymentEvent.
+     * The order gets a SUCCESS or FAILED payment record, and the PAID status if it succeeded;
+     * an attempt whose outcome is unknown gets no record.
+     * @param order The order to process payment for
+     * @param idempotencyKey Identifies the payment attempt; sent as the reference of the charge,
+     *                       so the provider recognises a repeated attempt, and kept on the payment record
+     * @return Completes with true if payment is successful, false if it was declined, or
+     * exceptionally with a PaymentOutcomeUnknownException if the provider did not answer (an
+     * error or timeout), in which case the attempt is to be retried under the same key
+     */
+    public CompletableFuture<Boolean> processPaymentAsync(Order order, String idempotencyKey) {
+        PaymentEvent event = new PaymentEvent();
+        event.begin();
+        try {
+            // The reference stays the same for the gateway's retries of this payment
+            PaymentRequest request = new PaymentRequest(idempotencyKey, order.getOrderId(), order.getTotal());
+            return gateway.charge(request).handle((result, error) -> {
+                if (error != null || result.isRetryable()) {
+                    // The charge may or may not have gone through
+                    LOGGER.log(Level.WARNING, "Payment outcome unknown for Order #" + order.getOrderId()
+                            + (error == null ? ": " + result : ""), error);
+                    event.complete(paymentProvider, order, false);
+                    throw new PaymentOutcomeUnknownException(idempotencyKey, "Payment outcome unknown for Order #"
+                            + order.getOrderId() + ": " + (error != null ? error.getMessage() : result), error);
+                }
+                if (!result.isApproved()) {
+                    LOGGER.warning("Payment failed for Order #" + order.getOrderId() + ": " + result);
+                }
+                boolean succeeded = result.isApproved();
+                recordPayment(order, idempotencyKey, succeeded);
+                event.complete(paymentProvider, order, succeeded);
+                return succeeded;
+            });
         } catch (Exception e) {
-            System.err.println("Payment processing error: " + e.getMessage());
-
-            // Create failed payment record
-            Payment payment = new Payment(order, order.getTotal(), "FAILED");
-            order.setPayment(payment);
+            LOGGER.log(Level.SEVERE, "Payment processing error for Order #" + order.getOrderId(), e);
+            recordPayment(order, idempotencyKey, false);
+            event.complete(paymentProvider, order, false);
+            return CompletableFuture.completedFuture(false);
+        }
+    }
 
-            return false;
+    private void recordPayment(Order order, String idempotencyKey, boolean succeeded) {
+        // Create payment record
+        Payment payment = new Payment(order, order.getTotal(), succeeded ? "SUCCESS" : "FAILED", idempotencyKey);
+        order.setPayment(payment);
+        if (succeeded) {
+            order.setStatus("PAID");
         }
     }
 
@@ -1,5 +1,7 @@
 package org.apiary.model;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -16,7 +18,12 @@ public class ShoppingCart {
     @Column(name = "cartId")
     private Integer cartId;
 
-    @OneToOne
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "clientId", nullable = false)
     private Client client;
 
@@ -39,6 +46,14 @@ public class ShoppingCart {
         this.cartId = cartId;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Client getClient() {
         return client;
     }
@@ -127,9 +142,9 @@ public class ShoppingCart {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof ShoppingCart)) return false;
         ShoppingCart cart = (ShoppingCart) o;
-        return Objects.equals(cartId, cart.cartId);
+        return Objects.equals(cartId, cart.getCartId());
     }
 
     @Override
@@ -65,9 +65,10 @@ public class User {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        // instanceof and the id getter, so that uninitialized lazy proxies compare equal too
+        if (!(o instanceof User)) return false;
         User user = (User) o;
-        return Objects.equals(userId, user.userId);
+        return Objects.equals(userId, user.getUserId());
     }
 
     @Override
@@ -0,0 +1,19 @@
+package org.apiary.payment;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Client of an external payment provider. Charges are asynchronous: the caller gets a
+ * future right away and no thread waits for the provider's answer.
+ * Implementations are picked with the payment.gateway setting, see PaymentGateways.
+ */
+public interface PaymentGateway {
+
+    /**
+     * Charge a payment
+     * @param request The payment to charge; a request sent again with the same reference
+     *                must not be charged twice
+     * @return The outcome; completes exceptionally if the provider could not be reached
+     */
+    CompletableFuture<PaymentResult> charge(PaymentRequest request);
+}
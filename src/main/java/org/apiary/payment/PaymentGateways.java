@@ -0,0 +1,51 @@
+package org.apiary.payment;
+
+import org.apiary.config.AppConfig;
+
+/**
+ * Creates the payment gateway named by the payment.gateway setting: "simulated" (the
+ * default, see SimulatedPaymentGateway) or the class name of a PaymentGateway with a
+ * public no-argument constructor. The gateway is wrapped in a ResilientPaymentGateway
+ * configured by the payment.* settings.
+ */
+public final class PaymentGateways {
+
+    public static final String SIMULATED = "simulated";
+
+    // Prevent instantiation
+    private PaymentGateways() {
+    }
+
+    /**
+     * Create the configured payment gateway
+     * @param config The application settings
+     * @return The gateway, with concurrency limit, timeouts and retries
+     * @throws IllegalStateException if payment.gateway names a class that cannot be created
+     */
+    public static PaymentGateway create(AppConfig config) {
+        return new ResilientPaymentGateway(createProvider(config),
+                config.getPaymentMaxConcurrent(),
+                config.getPaymentMaxQueued(),
+                config.getPaymentTimeoutMillis(),
+                config.getPaymentMaxAttempts(),
+                config.getPaymentRetryBackoffMillis(),
+                config.getPaymentRetryMaxBackoffMillis());
+    }
+
+    private static PaymentGateway createProvider(AppConfig config) {
+        String gateway = config.getPaymentGateway();
+        if (SIMULATED.equals(gateway)) {
+            return new SimulatedPaymentGateway(
+                    config.getPaymentDelayMillis(),
+                    config.getDouble("payment.simulated.latencySigma", 0.0),
+                    config.getDouble("payment.simulated.declineRate", 0.0),
+                    config.getDouble("payment.simulated.errorRate", 0.0),
+                    config.getDouble("payment.simulated.timeoutRate", 0.0));
+        }
+        try {
+            return Class.forName(gateway).asSubclass(PaymentGateway.class).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalStateException("Cannot create payment gateway " + gateway, e);
+        }
+    }
+}
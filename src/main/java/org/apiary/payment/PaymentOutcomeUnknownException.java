@@ -0,0 +1,26 @@
+package org.apiary.payment;
+
+/**
+ * Thrown when it is not known whether a payment attempt was charged, e.g. the provider did
+ * not answer in time, or the charge went through but could not be recorded. The attempt is
+ * to be retried under the same idempotency key: the provider answers a repeated reference
+ * with the outcome of the first charge, while a new key could charge again.
+ */
+public class PaymentOutcomeUnknownException extends RuntimeException {
+
+    private final String idempotencyKey;
+
+    /**
+     * @param idempotencyKey The key of the attempt, to retry it with
+     * @param message What went wrong
+     * @param cause The error, or null if there is none
+     */
+    public PaymentOutcomeUnknownException(String idempotencyKey, String message, Throwable cause) {
+        super(message, cause);
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+}
@@ -0,0 +1,50 @@
+package org.apiary.payment;
+
+import java.math.BigDecimal;
+
+/**
+ * A payment to charge through a PaymentGateway
+ */
+public final class PaymentRequest {
+
+    public static final String DEFAULT_CURRENCY = "RON";
+
+    private final String reference;
+    private final Integer orderId;
+    private final BigDecimal amount;
+    private final String currency;
+
+    /**
+     * @param reference Identifies the payment to the provider, the same for every retry of it
+     * @param orderId The order paid for
+     * @param amount The amount to charge
+     */
+    public PaymentRequest(String reference, Integer orderId, BigDecimal amount) {
+        this.reference = reference;
+        this.orderId = orderId;
+        this.amount = amount;
+        this.currency = DEFAULT_CURRENCY;
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    public Integer getOrderId() {
+        return orderId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentRequest{reference='" + reference + "', orderId=" + orderId
+                + ", amount=" + amount + " " + currency + "}";
+    }
+}
@@ -0,0 +1,75 @@
+package org.apiary.payment;
+
+/**
+ * The outcome of a charge
+ */
+public final class PaymentResult {
+
+    public enum Status {
+        /** The amount was charged */
+        APPROVED,
+        /** The provider refused the payment, e.g. insufficient funds; retrying will not help */
+        DECLINED,
+        /** The charge did not go through, e.g. the provider was unavailable or timed out; it may be retried */
+        ERROR
+    }
+
+    private final Status status;
+    private final String transactionId;
+    private final String message;
+
+    private PaymentResult(Status status, String transactionId, String message) {
+        this.status = status;
+        this.transactionId = transactionId;
+        this.message = message;
+    }
+
+    /**
+     * @param transactionId The provider's id of the charge
+     * @return An approved result
+     */
+    public static PaymentResult approved(String transactionId) {
+        return new PaymentResult(Status.APPROVED, transactionId, null);
+    }
+
+    /**
+     * @param message Why the payment was declined
+     * @return A declined result
+     */
+    public static PaymentResult declined(String message) {
+        return new PaymentResult(Status.DECLINED, null, message);
+    }
+
+    /**
+     * @param message What went wrong
+     * @return A result for a charge that may be retried
+     */
+    public static PaymentResult error(String message) {
+        return new PaymentResult(Status.ERROR, null, message);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isApproved() {
+        return status == Status.APPROVED;
+    }
+
+    public boolean isRetryable() {
+        return status == Status.ERROR;
+    }
+
+    @Override
+    public String toString() {
+        return status + (transactionId != null ? " " + transactionId : "") + (message != null ? ": " + message : "");
+    }
+}
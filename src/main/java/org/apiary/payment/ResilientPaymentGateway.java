@@ -0,0 +1,150 @@
+package org.apiary.payment;
+
+import org.apiary.metrics.Counter;
+import org.apiary.metrics.MetricsRegistry;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Wraps a PaymentGateway with the protections a remote provider needs:
+ * <ul>
+ *   <li>bounded concurrency: at most maxConcurrent charges are in flight, the next
+ *       maxQueued wait in a queue (without holding a thread), and charges beyond that are
+ *       answered with an error right away</li>
+ *   <li>a timeout per attempt</li>
+ *   <li>retries of failed attempts (retryable results, timeouts and errors) up to
+ *       maxAttempts, after an exponential backoff with full jitter so that retries of
+ *       charges that failed together do not arrive together</li>
+ * </ul>
+ * Retries send the same request, so the provider recognises them by its reference.
+ */
+public class ResilientPaymentGateway implements PaymentGateway {
+
+    private static final Logger LOGGER = Logger.getLogger(ResilientPaymentGateway.class.getName());
+
+    private final PaymentGateway delegate;
+    private final int maxQueued;
+    private final long timeoutMillis;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+
+    private final Semaphore permits;
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Counter retries;
+    private final Counter timeouts;
+    private final Counter rejected;
+
+    /**
+     * @param delegate The gateway to protect
+     * @param maxConcurrent The maximum number of charges in flight
+     * @param maxQueued The maximum number of charges waiting for a slot
+     * @param timeoutMillis The time an attempt may take
+     * @param maxAttempts The number of attempts per charge, 1 for no retries
+     * @param backoffMillis The backoff before the first retry, doubled for every further one
+     * @param maxBackoffMillis The longest backoff
+     */
+    public ResilientPaymentGateway(PaymentGateway delegate, int maxConcurrent, int maxQueued, long timeoutMillis,
+                                   int maxAttempts, long backoffMillis, long maxBackoffMillis) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+        this.maxQueued = maxQueued;
+        this.timeoutMillis = timeoutMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        this.retries = registry.counter("payment.retries");
+        this.timeouts = registry.counter("payment.timeouts");
+        this.rejected = registry.counter("payment.rejected");
+        registry.gauge("payment.inFlight", inFlight::get);
+        registry.gauge("payment.queued", queued::get);
+    }
+
+    @Override
+    public CompletableFuture<PaymentResult> charge(PaymentRequest request) {
+        CompletableFuture<PaymentResult> outcome = new CompletableFuture<>();
+        enqueue(request, 1, outcome);
+        return outcome;
+    }
+
+    private void enqueue(PaymentRequest request, int attempt, CompletableFuture<PaymentResult> outcome) {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.increment();
+            outcome.complete(PaymentResult.error("Too many payments in progress"));
+            return;
+        }
+        waiting.add(() -> send(request, attempt, outcome));
+        drain();
+    }
+
+    private void drain() {
+        // A charge is added before a slot is looked for, and a slot released before the
+        // queue is looked at, so a waiting charge is never left behind with a slot free
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            Runnable next = waiting.poll();
+            if (next == null) {
+                permits.release();
+                return;
+            }
+            queued.decrementAndGet();
+            next.run();
+        }
+    }
+
+    private void send(PaymentRequest request, int attempt, CompletableFuture<PaymentResult> outcome) {
+        inFlight.incrementAndGet();
+        CompletableFuture<PaymentResult> response;
+        try {
+            response = delegate.charge(request).copy();
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+            inFlight.decrementAndGet();
+            permits.release();
+            drain();
+            complete(request, attempt, outcome, result != null ? result : failure(error));
+        });
+    }
+
+    private PaymentResult failure(Throwable error) {
+        if (error instanceof TimeoutException) {
+            timeouts.increment();
+            return PaymentResult.error("No answer within " + timeoutMillis + " ms");
+        }
+        return PaymentResult.error(error.getClass().getSimpleName() + ": " + error.getMessage());
+    }
+
+    private void complete(PaymentRequest request, int attempt, CompletableFuture<PaymentResult> outcome,
+                          PaymentResult result) {
+        if (!result.isRetryable() || attempt >= maxAttempts) {
+            outcome.complete(result);
+            return;
+        }
+        long delay = backoff(attempt);
+        retries.increment();
+        LOGGER.info("Payment attempt " + attempt + " of " + maxAttempts + " for order " + request.getOrderId()
+                + " failed (" + result.getMessage() + "), retrying in " + delay + " ms");
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                .execute(() -> enqueue(request, attempt + 1, outcome));
+    }
+
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
@@ -0,0 +1,89 @@
+package org.apiary.payment;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A payment provider simulated in-process, for development, tests and load tests.
+ * Each charge answers after a log-normally distributed latency (median latencyMillis,
+ * spread latencySigma, 0 for a fixed latency), and a share of the charges are declined,
+ * fail with a retryable error, or never answer so that the caller's timeout fires.
+ * Answers are scheduled on a timer instead of sleeping, so any number of charges can be
+ * in flight at once. Like a real provider it remembers approved references, and a
+ * retried request is answered with the original charge instead of being charged again.
+ */
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    // Approved references kept for duplicate detection
+    private static final int MAX_REMEMBERED = 100_000;
+
+    private final long latencyMillis;
+    private final double latencySigma;
+    private final double declineRate;
+    private final double errorRate;
+    private final double timeoutRate;
+
+    private final Map<String, PaymentResult> approved = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "simulated-payment-gateway");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param latencyMillis The median time to answer a charge
+     * @param latencySigma The spread of the latency (sigma of its logarithm), 0 for a fixed latency
+     * @param declineRate The share of charges declined, from 0 to 1
+     * @param errorRate The share of charges failing with a retryable error, from 0 to 1
+     * @param timeoutRate The share of charges never answered, from 0 to 1
+     */
+    public SimulatedPaymentGateway(long latencyMillis, double latencySigma,
+                                   double declineRate, double errorRate, double timeoutRate) {
+        this.latencyMillis = Math.max(0, latencyMillis);
+        this.latencySigma = Math.max(0, latencySigma);
+        this.declineRate = declineRate;
+        this.errorRate = errorRate;
+        this.timeoutRate = timeoutRate;
+    }
+
+    @Override
+    public CompletableFuture<PaymentResult> charge(PaymentRequest request) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        PaymentResult previous = approved.get(request.getReference());
+        PaymentResult result;
+        double roll = random.nextDouble();
+        if (previous != null) {
+            result = previous;
+        } else if (roll < timeoutRate) {
+            // Lost in the network: never completes
+            return new CompletableFuture<>();
+        } else if (roll < timeoutRate + errorRate) {
+            result = PaymentResult.error("Provider unavailable");
+        } else if (roll < timeoutRate + errorRate + declineRate) {
+            result = PaymentResult.declined("Card declined");
+        } else {
+            result = PaymentResult.approved(UUID.randomUUID().toString());
+            if (approved.size() >= MAX_REMEMBERED) {
+                approved.clear();
+            }
+            PaymentResult raced = approved.putIfAbsent(request.getReference(), result);
+            if (raced != null) {
+                result = raced;
+            }
+        }
+
+        long delay = latencySigma == 0
+                ? latencyMillis
+                : Math.round(latencyMillis * Math.exp(latencySigma * random.nextGaussian()));
+        CompletableFuture<PaymentResult> response = new CompletableFuture<>();
+        PaymentResult answer = result;
+        timer.schedule(() -> response.complete(answer), delay, TimeUnit.MILLISECONDS);
+        return response;
+    }
+}
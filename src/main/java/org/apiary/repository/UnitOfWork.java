@@ -0,0 +1,126 @@
+package org.apiary.repository;
+
+import org.apiary.config.HibernateConfig;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Transaction scope shared by all repositories on the current thread.
+ * A service opens a unit of work once; every repository call made inside it
+ * joins the thread-bound Hibernate session (the "thread" current-session context
+ * configured in HibernateConfig) instead of opening its own session and transaction.
+ * Nested units of work join the outermost one, which alone commits or rolls back.
+ */
+public final class UnitOfWork {
+
+    private static final Logger LOGGER = Logger.getLogger(UnitOfWork.class.getName());
+
+    // Tracks the session of the outermost unit of work without forcing the
+    // current-session context to bind a session on threads that never start one
+    private static final ThreadLocal<Session> CURRENT = new ThreadLocal<>();
+
+    // First error that marked the unit of work for rollback, reported as the cause when it ends
+    private static final ThreadLocal<Throwable> ROLLBACK_CAUSE = new ThreadLocal<>();
+
+    // Prevent instantiation
+    private UnitOfWork() {
+    }
+
+    /**
+     * Execute work inside a unit of work, joining the current one if it is already active
+     * @param work The work to execute
+     * @param <R> The type of the result
+     * @return The result of the work
+     * @throws IllegalStateException if a repository marked the unit of work for rollback
+     */
+    public static <R> R execute(Supplier<R> work) {
+        if (isActive()) {
+            return work.get();
+        }
+
+        Session session = HibernateConfig.getSessionFactory().getCurrentSession();
+        Transaction transaction = session.beginTransaction();
+        CURRENT.set(session);
+        try {
+            R result = work.get();
+            if (transaction.getRollbackOnly()) {
+                transaction.rollback();
+                throw new IllegalStateException("Unit of work was marked for rollback", ROLLBACK_CAUSE.get());
+            }
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            rollbackQuietly(transaction);
+            throw e;
+        } finally {
+            CURRENT.remove();
+            ROLLBACK_CAUSE.remove();
+        }
+    }
+
+    /**
+     * Execute work without a result inside a unit of work
+     * @param work The work to execute
+     */
+    public static void run(Runnable work) {
+        execute(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Check if a unit of work is active on the current thread
+     * @return true if a unit of work is active, false otherwise
+     */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Get the session of the active unit of work
+     * @return The thread-bound session
+     * @throws IllegalStateException if no unit of work is active
+     */
+    public static Session currentSession() {
+        Session session = CURRENT.get();
+        if (session == null) {
+            throw new IllegalStateException("No active unit of work on the current thread");
+        }
+        return session;
+    }
+
+    /**
+     * Mark the active unit of work so that it rolls back instead of committing
+     */
+    public static void markRollbackOnly() {
+        markRollbackOnly(null);
+    }
+
+    /**
+     * Mark the active unit of work so that it rolls back instead of committing
+     * @param cause The error that made the work fail, or null if there is none
+     */
+    public static void markRollbackOnly(Throwable cause) {
+        if (isActive()) {
+            CURRENT.get().getTransaction().markRollbackOnly();
+            if (cause != null && ROLLBACK_CAUSE.get() == null) {
+                ROLLBACK_CAUSE.set(cause);
+            }
+        }
+    }
+
+    private static void rollbackQuietly(Transaction transaction) {
+        try {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Error rolling back unit of work", e);
+        }
+    }
+}
@@ -1,16 +1,34 @@
 package org.apiary.repository.impl;
 
 import org.apiary.config.HibernateConfig;
+import org.apiary.metrics.jfr.RepositoryEvent;
+import org.apiary.repository.UnitOfWork;
 import org.apiary.repository.interfaces.Repository;
+import org.apiary.utils.pagination.Cursor;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
+import org.hibernate.graph.GraphSemantic;
+import org.hibernate.query.Query;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,15 +41,276 @@ public abstract class AbstractRepository<ID, T> implements Repository<ID, T> {
 
     private static final Logger LOGGER = Logger.getLogger(AbstractRepository.class.getName());
     private final Class<T> entityClass;
+    private final String fetchGraph;
 
     protected AbstractRepository(Class<T> entityClass) {
+        this(entityClass, null);
+    }
+
+    /**
+     * @param entityClass The class of the entity
+     * @param fetchGraph The named entity graph loaded with every entity this repository returns,
+     *                   or null to load the entity alone (its to-one associations are lazy)
+     */
+    protected AbstractRepository(Class<T> entityClass, String fetchGraph) {
         this.entityClass = entityClass;
+        this.fetchGraph = fetchGraph;
+    }
+
+    /**
+     * Run read work in the session of the active unit of work, or in a short-lived
+     * session of its own when no unit of work is active. Recorded as a RepositoryEvent.
+     * @param work The work to run
+     * @param <R> The type of the result
+     * @return The result of the work
+     */
+    protected <R> R inSession(Function<Session, R> work) {
+        RepositoryEvent event = new RepositoryEvent();
+        event.begin();
+        boolean joined = UnitOfWork.isActive();
+        R result = null;
+        boolean failed = true;
+        try {
+            if (joined) {
+                result = joinUnitOfWork(work);
+            } else {
+                try (Session session = HibernateConfig.getSessionFactory().openSession()) {
+                    result = work.apply(session);
+                }
+            }
+            failed = false;
+            return result;
+        } finally {
+            event.complete(entityClass, false, joined, result, failed);
+        }
+    }
+
+    /**
+     * Run write work in the transaction of the active unit of work, or in a
+     * transaction of its own when no unit of work is active. Recorded as a RepositoryEvent.
+     * @param work The work to run
+     * @param <R> The type of the result
+     * @return The result of the work
+     */
+    protected <R> R inTransaction(Function<Session, R> work) {
+        RepositoryEvent event = new RepositoryEvent();
+        event.begin();
+        boolean joined = UnitOfWork.isActive();
+        R result = null;
+        boolean failed = true;
+        try {
+            result = joined ? joinUnitOfWork(work) : inOwnTransaction(work);
+            failed = false;
+            return result;
+        } finally {
+            event.complete(entityClass, true, joined, result, failed);
+        }
+    }
+
+    private <R> R inOwnTransaction(Function<Session, R> work) {
+        Transaction transaction = null;
+        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
+            transaction = session.beginTransaction();
+            R result = work.apply(session);
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
+    private <R> R joinUnitOfWork(Function<Session, R> work) {
+        try {
+            return work.apply(UnitOfWork.currentSession());
+        } catch (RuntimeException e) {
+            // Callers swallow repository errors, so make sure the shared transaction cannot commit
+            UnitOfWork.markRollbackOnly(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Apply the repository's fetch graph to an entity query, so the associations callers
+     * read after the session is closed are joined into the same statement
+     * @param session The session
+     * @param query The query selecting entities of this repository
+     * @param <Q> The type of the query
+     * @return The query
+     */
+    protected <Q extends Query<?>> Q withFetchGraph(Session session, Q query) {
+        if (fetchGraph != null) {
+            query.setHint(GraphSemantic.FETCH.getJpaHintName(), session.getEntityGraph(fetchGraph));
+        }
+        return query;
+    }
+
+    /**
+     * Load what the fetch graph cannot, typically collections, for entities about to leave the session.
+     * Called for the results of findAll and the paged queries; does nothing by default.
+     * @param session The session the entities were loaded in
+     * @param entities The loaded entities
+     */
+    protected void initializeAssociations(Session session, List<T> entities) {
+    }
+
+    /**
+     * Find a page of entities matching the given predicates, pushing the offset,
+     * limit, sort order and a separate COUNT query down to the database
+     * @param filter Builds the WHERE predicates for a query root
+     * @param sortSpec Translates the pageable's sort key into an entity attribute
+     * @param pageable The pagination information
+     * @return A page of matching entities
+     */
+    protected Page<T> findPage(BiFunction<CriteriaBuilder, Root<T>, List<Predicate>> filter,
+                               SortSpec<T> sortSpec, Pageable pageable) {
+        return inSession(session -> {
+            CriteriaBuilder cb = session.getCriteriaBuilder();
+
+            CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+            Root<T> countRoot = countQuery.from(entityClass);
+            countQuery.select(cb.count(countRoot))
+                    .where(filter.apply(cb, countRoot).toArray(new Predicate[0]));
+            long totalElements = session.createQuery(countQuery).getSingleResult();
+
+            if (totalElements <= pageable.getOffset()) {
+                return new Page<>(List.of(), pageable.getPage(), pageable.getSize(), totalElements);
+            }
+
+            CriteriaQuery<T> cq = cb.createQuery(entityClass);
+            Root<T> root = cq.from(entityClass);
+            cq.select(root)
+                    .where(filter.apply(cb, root).toArray(new Predicate[0]))
+                    .orderBy(orderBy(cb, root, session, sortSpec.resolve(pageable.getSortBy()).getAttribute(),
+                            pageable.isSortAscending()));
+            List<T> content = withFetchGraph(session, session.createQuery(cq))
+                    .setFirstResult(pageable.getOffset())
+                    .setMaxResults(pageable.getSize())
+                    .getResultList();
+            initializeAssociations(session, content);
+            return new Page<>(content, pageable.getPage(), pageable.getSize(), totalElements);
+        });
+    }
+
+    /**
+     * Find a page of entities using keyset pagination, sorted by the pageable's sort key
+     * as translated by the sort spec
+     * @param filter Builds the WHERE predicates for a query root
+     * @param sortSpec Translates the pageable's sort key into an entity attribute
+     * @param pageable The keyset pagination information
+     * @return A keyset page of matching entities
+     */
+    protected KeysetPage<T> findKeysetPage(BiFunction<CriteriaBuilder, Root<T>, List<Predicate>> filter,
+                                           SortSpec<T> sortSpec, KeysetPageable pageable) {
+        SortSpec.SortField<T> sortField = sortSpec.resolve(pageable.getSortBy());
+        return findKeysetPage(filter, sortField.getAttribute(), sortField.getReader(),
+                pageable.isSortAscending(), pageable);
+    }
+
+    /**
+     * Find a page of entities matching the given predicates using keyset pagination:
+     * rows are ordered by the sort attribute and then the id, and the query seeks
+     * past the cursor of the previous page instead of skipping rows with OFFSET
+     * @param filter Builds the WHERE predicates for a query root
+     * @param sortAttribute The attribute to sort by, or null to sort by id only
+     * @param sortKey Reads the sort attribute from an entity (ignored when sorting by id only)
+     * @param ascending true to sort ascending, false to sort descending
+     * @param pageable The keyset pagination information
+     * @return A keyset page of matching entities
+     */
+    protected KeysetPage<T> findKeysetPage(BiFunction<CriteriaBuilder, Root<T>, List<Predicate>> filter,
+                                           String sortAttribute, Function<T, ?> sortKey, boolean ascending,
+                                           KeysetPageable pageable) {
+        return inSession(session -> {
+            CriteriaBuilder cb = session.getCriteriaBuilder();
+            CriteriaQuery<T> cq = cb.createQuery(entityClass);
+            Root<T> root = cq.from(entityClass);
+            Path<Comparable<Object>> idPath = root.get(idAttribute(session).getName());
+            Path<Comparable<Object>> sortPath = sortAttribute != null ? root.get(sortAttribute) : null;
+
+            List<Predicate> predicates = new ArrayList<>(filter.apply(cb, root));
+            Cursor cursor = pageable.getCursor();
+            if (cursor != null) {
+                predicates.add(afterCursor(cb, sortPath, idPath, ascending, cursor));
+            }
+
+            cq.select(root)
+                    .where(predicates.toArray(new Predicate[0]))
+                    .orderBy(orderBy(cb, root, session, sortAttribute, ascending));
+
+            // Fetch one extra row to find out whether another page follows
+            List<T> rows = withFetchGraph(session, session.createQuery(cq))
+                    .setMaxResults(pageable.getSize() + 1)
+                    .getResultList();
+            if (rows.size() <= pageable.getSize()) {
+                initializeAssociations(session, rows);
+                return new KeysetPage<>(rows, pageable.getSize(), null);
+            }
+
+            List<T> content = new ArrayList<>(rows.subList(0, pageable.getSize()));
+            initializeAssociations(session, content);
+            T last = content.get(content.size() - 1);
+            Cursor nextCursor = new Cursor(
+                    sortPath != null ? sortKey.apply(last) : null,
+                    session.getIdentifier(last));
+            return new KeysetPage<>(content, pageable.getSize(), nextCursor);
+        });
+    }
+
+    /**
+     * Build an ORDER BY on the sort attribute with the id as a tie-breaker, so that
+     * pages are stable even when sort values repeat
+     */
+    private List<Order> orderBy(CriteriaBuilder cb, Root<T> root, Session session,
+                                String sortAttribute, boolean ascending) {
+        List<Order> orders = new ArrayList<>();
+        if (sortAttribute != null) {
+            Path<?> sortPath = root.get(sortAttribute);
+            orders.add(ascending ? cb.asc(sortPath) : cb.desc(sortPath));
+        }
+        Path<?> idPath = root.get(idAttribute(session).getName());
+        orders.add(ascending ? cb.asc(idPath) : cb.desc(idPath));
+        return orders;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Predicate afterCursor(CriteriaBuilder cb, Path<Comparable<Object>> sortPath,
+                                  Path<Comparable<Object>> idPath, boolean ascending, Cursor cursor) {
+        Comparable<Object> lastId = (Comparable<Object>) cursor.getId();
+        Predicate idAfter = ascending ? cb.greaterThan(idPath, lastId) : cb.lessThan(idPath, lastId);
+        if (sortPath == null) {
+            return idAfter;
+        }
+
+        Comparable<Object> lastSortValue = (Comparable<Object>) cursor.getSortValue();
+        if (lastSortValue == null) {
+            throw new IllegalArgumentException("Cursor has no sort value for a sorted keyset query");
+        }
+        Predicate sortAfter = ascending
+                ? cb.greaterThan(sortPath, lastSortValue)
+                : cb.lessThan(sortPath, lastSortValue);
+        return cb.or(sortAfter, cb.and(cb.equal(sortPath, lastSortValue), idAfter));
+    }
+
+    /**
+     * Get the identifier attribute of the entity, used as a stable ordering for pages
+     * @param session The session
+     * @return The identifier attribute
+     */
+    protected SingularAttribute<? super T, ?> idAttribute(Session session) {
+        EntityType<T> entityType = session.getMetamodel().entity(entityClass);
+        return entityType.getId(entityType.getIdType().getJavaType());
     }
 
     @Override
     public Optional<T> findById(ID id) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            return Optional.ofNullable(session.get(entityClass, (Serializable) id));
+        try {
+            return inSession(session -> Optional.ofNullable(fetchGraph != null
+                    ? session.find(entityClass, id,
+                    Map.of(GraphSemantic.FETCH.getJpaHintName(), session.getEntityGraph(fetchGraph)))
+                    : session.get(entityClass, (Serializable) id)));
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding entity by ID: " + id, e);
             return Optional.empty();
@@ -40,12 +319,16 @@ public abstract class AbstractRepository<ID, T> implements Repository<ID, T> {
 
     @Override
     public List<T> findAll() {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            CriteriaBuilder cb = session.getCriteriaBuilder();
-            CriteriaQuery<T> cq = cb.createQuery(entityClass);
-            Root<T> root = cq.from(entityClass);
-            cq.select(root);
-            return session.createQuery(cq).getResultList();
+        try {
+            return inSession(session -> {
+                CriteriaBuilder cb = session.getCriteriaBuilder();
+                CriteriaQuery<T> cq = cb.createQuery(entityClass);
+                Root<T> root = cq.from(entityClass);
+                cq.select(root);
+                List<T> entities = withFetchGraph(session, session.createQuery(cq)).getResultList();
+                initializeAssociations(session, entities);
+                return entities;
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding all entities", e);
             return List.of();
@@ -54,16 +337,12 @@ public abstract class AbstractRepository<ID, T> implements Repository<ID, T> {
 
     @Override
     public T save(T entity) {
-        Transaction transaction = null;
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            transaction = session.beginTransaction();
-            session.saveOrUpdate(entity);
-            transaction.commit();
-            return entity;
+        try {
+            return inTransaction(session -> {
+                session.saveOrUpdate(entity);
+                return entity;
+            });
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LOGGER.log(Level.SEVERE, "Error saving entity", e);
             return null;
         }
@@ -71,15 +350,12 @@ public abstract class AbstractRepository<ID, T> implements Repository<ID, T> {
 
     @Override
     public void delete(T entity) {
-        Transaction transaction = null;
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            transaction = session.beginTransaction();
-            session.delete(entity);
-            transaction.commit();
+        try {
+            inTransaction(session -> {
+                session.delete(entity);
+                return null;
+            });
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LOGGER.log(Level.SEVERE, "Error deleting entity", e);
         }
     }
@@ -88,4 +364,4 @@ public abstract class AbstractRepository<ID, T> implements Repository<ID, T> {
     public void deleteById(ID id) {
         findById(id).ifPresent(this::delete);
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,10 @@
 package org.apiary.repository.impl;
 
-import org.apiary.config.HibernateConfig;
 import org.apiary.model.Apiary;
 import org.apiary.model.Beekeeper;
 import org.apiary.repository.interfaces.ApiaryRepository;
-import org.hibernate.Session;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
 import org.hibernate.query.Query;
 
 import java.util.List;
@@ -15,30 +15,50 @@ public class ApiaryRepositoryImpl extends AbstractRepository<Integer, Apiary> im
 
     private static final Logger LOGGER = Logger.getLogger(ApiaryRepositoryImpl.class.getName());
 
+    private static final SortSpec<Apiary> SORT_SPEC = new SortSpec<Apiary>("name")
+            .add("name", "name", Apiary::getName)
+            .add("location", "location", Apiary::getLocation);
+
     public ApiaryRepositoryImpl() {
         super(Apiary.class);
     }
 
     @Override
     public List<Apiary> findByBeekeeper(Beekeeper beekeeper) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Apiary> query = session.createQuery(
-                    "FROM Apiary WHERE beekeeper.id = :beekeeperId", Apiary.class);
-            query.setParameter("beekeeperId", beekeeper.getUserId());
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Apiary> query = session.createQuery(
+                        "FROM Apiary WHERE beekeeper.id = :beekeeperId", Apiary.class);
+                query.setParameter("beekeeperId", beekeeper.getUserId());
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding apiaries by beekeeper: " + beekeeper.getUserId(), e);
             return List.of();
         }
     }
 
+    @Override
+    public Page<Apiary> findByBeekeeper(Beekeeper beekeeper, Pageable pageable) {
+        try {
+            return findPage(
+                    (cb, root) -> List.of(cb.equal(root.get("beekeeper").get("userId"), beekeeper.getUserId())),
+                    SORT_SPEC, pageable);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding page of apiaries by beekeeper: " + beekeeper.getUserId(), e);
+            return new Page<>(List.of(), pageable.getPage(), pageable.getSize(), 0);
+        }
+    }
+
     @Override
     public List<Apiary> findByNameContaining(String name) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Apiary> query = session.createQuery(
-                    "FROM Apiary WHERE name LIKE :name", Apiary.class);
-            query.setParameter("name", "%" + name + "%");
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Apiary> query = session.createQuery(
+                        "FROM Apiary WHERE name LIKE :name", Apiary.class);
+                query.setParameter("name", "%" + name + "%");
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding apiaries by name: " + name, e);
             return List.of();
@@ -47,11 +67,13 @@ public class ApiaryRepositoryImpl extends AbstractRepository<Integer, Apiary> im
 
     @Override
     public List<Apiary> findByLocationContaining(String location) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Apiary> query = session.createQuery(
-                    "FROM Apiary WHERE location LIKE :location", Apiary.class);
-            query.setParameter("location", "%" + location + "%");
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Apiary> query = session.createQuery(
+                        "FROM Apiary WHERE location LIKE :location", Apiary.class);
+                query.setParameter("location", "%" + location + "%");
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding apiaries by location: " + location, e);
             return List.of();
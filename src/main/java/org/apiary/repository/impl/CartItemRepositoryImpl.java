@@ -1,12 +1,10 @@
 package org.apiary.repository.impl;
 
-import org.apiary.config.HibernateConfig;
 import org.apiary.model.CartItem;
+import org.apiary.model.Client;
 import org.apiary.model.HoneyProduct;
 import org.apiary.model.ShoppingCart;
 import org.apiary.repository.interfaces.CartItemRepository;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
 import org.hibernate.query.Query;
 
 import java.util.List;
@@ -19,30 +17,49 @@ public class CartItemRepositoryImpl extends AbstractRepository<Integer, CartItem
     private static final Logger LOGGER = Logger.getLogger(CartItemRepositoryImpl.class.getName());
 
     public CartItemRepositoryImpl() {
-        super(CartItem.class);
+        super(CartItem.class, CartItem.WITH_PRODUCT_GRAPH);
     }
 
     @Override
     public List<CartItem> findByCart(ShoppingCart cart) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<CartItem> query = session.createQuery(
-                    "FROM CartItem WHERE cart.id = :cartId", CartItem.class);
-            query.setParameter("cartId", cart.getCartId());
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<CartItem> query = withFetchGraph(session, session.createQuery(
+                        "FROM CartItem WHERE cart.id = :cartId", CartItem.class));
+                query.setParameter("cartId", cart.getCartId());
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding cart items by cart: " + cart.getCartId(), e);
             return List.of();
         }
     }
 
+    @Override
+    public List<CartItem> findByClient(Client client) {
+        try {
+            return inSession(session -> {
+                Query<CartItem> query = withFetchGraph(session, session.createQuery(
+                        "FROM CartItem WHERE cart.client.id = :clientId ORDER BY itemId", CartItem.class));
+                query.setParameter("clientId", client.getUserId());
+                return query.getResultList();
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding cart items by client: " + client.getUsername(), e);
+            return List.of();
+        }
+    }
+
     @Override
     public Optional<CartItem> findByCartAndProduct(ShoppingCart cart, HoneyProduct product) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<CartItem> query = session.createQuery(
-                    "FROM CartItem WHERE cart.id = :cartId AND product.id = :productId", CartItem.class);
-            query.setParameter("cartId", cart.getCartId());
-            query.setParameter("productId", product.getProductId());
-            return Optional.ofNullable(query.uniqueResult());
+        try {
+            return inSession(session -> {
+                Query<CartItem> query = withFetchGraph(session, session.createQuery(
+                        "FROM CartItem WHERE cart.id = :cartId AND product.id = :productId", CartItem.class));
+                query.setParameter("cartId", cart.getCartId());
+                query.setParameter("productId", product.getProductId());
+                return Optional.ofNullable(query.uniqueResult());
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding cart item by cart and product: "
                     + cart.getCartId() + ", " + product.getProductId(), e);
@@ -52,21 +69,31 @@ public class CartItemRepositoryImpl extends AbstractRepository<Integer, CartItem
 
     @Override
     public void deleteByCart(ShoppingCart cart) {
-        Transaction transaction = null;
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            transaction = session.beginTransaction();
-
-            Query query = session.createQuery(
-                    "DELETE FROM CartItem WHERE cart.id = :cartId");
-            query.setParameter("cartId", cart.getCartId());
-            query.executeUpdate();
-
-            transaction.commit();
+        try {
+            inTransaction(session -> {
+                Query<?> query = session.createQuery(
+                        "DELETE FROM CartItem WHERE cart.id = :cartId");
+                query.setParameter("cartId", cart.getCartId());
+                return query.executeUpdate();
+            });
         } catch (Exception e) {
-            if (transaction != null) {
-                transaction.rollback();
-            }
             LOGGER.log(Level.SEVERE, "Error deleting cart items by cart: " + cart.getCartId(), e);
         }
     }
+
+    @Override
+    public int deleteByClient(Client client) {
+        try {
+            return inTransaction(session -> {
+                Query<?> query = session.createQuery(
+                        "DELETE FROM CartItem WHERE cart.id IN " +
+                                "(SELECT c.cartId FROM ShoppingCart c WHERE c.client.id = :clientId)");
+                query.setParameter("clientId", client.getUserId());
+                return query.executeUpdate();
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error deleting cart items by client: " + client.getUsername(), e);
+            return 0;
+        }
+    }
 }
\ No newline at end of file
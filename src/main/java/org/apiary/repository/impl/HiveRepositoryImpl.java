@@ -1,31 +1,36 @@
 package org.apiary.repository.impl;
 
-import org.apiary.config.HibernateConfig;
 import org.apiary.model.Apiary;
 import org.apiary.model.Hive;
 import org.apiary.repository.interfaces.HiveRepository;
-import org.hibernate.Session;
 import org.hibernate.query.Query;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class HiveRepositoryImpl extends AbstractRepository<Integer, Hive> implements HiveRepository {
 
     private static final Logger LOGGER = Logger.getLogger(HiveRepositoryImpl.class.getName());
+    private static final int ID_CHUNK_SIZE = 1000;
 
     public HiveRepositoryImpl() {
-        super(Hive.class);
+        super(Hive.class, Hive.WITH_APIARY_GRAPH);
     }
 
     @Override
     public List<Hive> findByApiary(Apiary apiary) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Hive> query = session.createQuery(
-                    "FROM Hive WHERE apiary.id = :apiaryId ORDER BY hiveNumber", Hive.class);
-            query.setParameter("apiaryId", apiary.getApiaryId());
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Hive> query = withFetchGraph(session, session.createQuery(
+                        "FROM Hive WHERE apiary.id = :apiaryId ORDER BY hiveNumber", Hive.class));
+                query.setParameter("apiaryId", apiary.getApiaryId());
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding hives by apiary: " + apiary.getApiaryId(), e);
             return List.of();
@@ -34,12 +39,14 @@ public class HiveRepositoryImpl extends AbstractRepository<Integer, Hive> implem
 
     @Override
     public List<Hive> findByApiaryAndHiveNumber(Apiary apiary, Integer hiveNumber) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Hive> query = session.createQuery(
-                    "FROM Hive WHERE apiary.id = :apiaryId AND hiveNumber = :hiveNumber", Hive.class);
-            query.setParameter("apiaryId", apiary.getApiaryId());
-            query.setParameter("hiveNumber", hiveNumber);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Hive> query = withFetchGraph(session, session.createQuery(
+                        "FROM Hive WHERE apiary.id = :apiaryId AND hiveNumber = :hiveNumber", Hive.class));
+                query.setParameter("apiaryId", apiary.getApiaryId());
+                query.setParameter("hiveNumber", hiveNumber);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding hives by apiary and hive number: "
                     + apiary.getApiaryId() + ", " + hiveNumber, e);
@@ -49,11 +56,13 @@ public class HiveRepositoryImpl extends AbstractRepository<Integer, Hive> implem
 
     @Override
     public List<Hive> findByQueenYear(Integer queenYear) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Hive> query = session.createQuery(
-                    "FROM Hive WHERE queenYear = :queenYear", Hive.class);
-            query.setParameter("queenYear", queenYear);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Hive> query = withFetchGraph(session, session.createQuery(
+                        "FROM Hive WHERE queenYear = :queenYear", Hive.class));
+                query.setParameter("queenYear", queenYear);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding hives by queen year: " + queenYear, e);
             return List.of();
@@ -62,14 +71,45 @@ public class HiveRepositoryImpl extends AbstractRepository<Integer, Hive> implem
 
     @Override
     public long countByApiary(Apiary apiary) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Long> query = session.createQuery(
-                    "SELECT COUNT(*) FROM Hive WHERE apiary.id = :apiaryId", Long.class);
-            query.setParameter("apiaryId", apiary.getApiaryId());
-            return query.uniqueResult();
+        try {
+            return inSession(session -> {
+                Query<Long> query = session.createQuery(
+                        "SELECT COUNT(*) FROM Hive WHERE apiary.id = :apiaryId", Long.class);
+                query.setParameter("apiaryId", apiary.getApiaryId());
+                return query.uniqueResult();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error counting hives by apiary: " + apiary.getApiaryId(), e);
             return 0;
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public Map<Integer, Long> countsByApiaryIds(Collection<Integer> apiaryIds) {
+        Map<Integer, Long> counts = new HashMap<>();
+        apiaryIds.forEach(apiaryId -> counts.put(apiaryId, 0L));
+        if (counts.isEmpty()) {
+            return counts;
+        }
+
+        try {
+            return inSession(session -> {
+                Query<Object[]> query = session.createQuery(
+                        "SELECT h.apiary.id, COUNT(h) FROM Hive h " +
+                                "WHERE h.apiary.id IN (:apiaryIds) GROUP BY h.apiary.id", Object[].class);
+                // Chunked to stay below the SQL Server limit of 2100 parameters per statement
+                List<Integer> ids = new ArrayList<>(counts.keySet());
+                for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+                    query.setParameterList("apiaryIds", ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size())));
+                    for (Object[] row : query.getResultList()) {
+                        counts.put((Integer) row[0], (Long) row[1]);
+                    }
+                }
+                return counts;
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error counting hives by apiaries: " + apiaryIds, e);
+            return counts;
+        }
+    }
+}
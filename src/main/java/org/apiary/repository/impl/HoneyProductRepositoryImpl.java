@@ -1,15 +1,33 @@
 package org.apiary.repository.impl;
 
-import org.apiary.config.HibernateConfig;
 import org.apiary.model.Apiary;
+import org.apiary.model.Beekeeper;
 import org.apiary.model.Hive;
 import org.apiary.model.HoneyProduct;
 import org.apiary.repository.interfaces.HoneyProductRepository;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
+import org.hibernate.LockMode;
+import org.hibernate.LockOptions;
 import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.query.Query;
 
+import javax.persistence.LockModeType;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,17 +35,25 @@ public class HoneyProductRepositoryImpl extends AbstractRepository<Integer, Hone
 
     private static final Logger LOGGER = Logger.getLogger(HoneyProductRepositoryImpl.class.getName());
 
+    private static final int ID_CHUNK_SIZE = 1000;
+
+    private static final SortSpec<HoneyProduct> SORT_SPEC = new SortSpec<HoneyProduct>(SortSpec.ID_KEY)
+            .add("name", "name", HoneyProduct::getName)
+            .add("price", "price", HoneyProduct::getPrice);
+
     public HoneyProductRepositoryImpl() {
-        super(HoneyProduct.class);
+        super(HoneyProduct.class, HoneyProduct.CATALOG_GRAPH);
     }
 
     @Override
     public List<HoneyProduct> findByApiary(Apiary apiary) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<HoneyProduct> query = session.createQuery(
-                    "FROM HoneyProduct WHERE apiary.id = :apiaryId", HoneyProduct.class);
-            query.setParameter("apiaryId", apiary.getApiaryId());
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<HoneyProduct> query = withFetchGraph(session, session.createQuery(
+                        "FROM HoneyProduct WHERE apiary.id = :apiaryId", HoneyProduct.class));
+                query.setParameter("apiaryId", apiary.getApiaryId());
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding honey products by apiary: " + apiary.getApiaryId(), e);
             return List.of();
@@ -36,24 +62,43 @@ public class HoneyProductRepositoryImpl extends AbstractRepository<Integer, Hone
 
     @Override
     public List<HoneyProduct> findByHive(Hive hive) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<HoneyProduct> query = session.createQuery(
-                    "FROM HoneyProduct WHERE hive.id = :hiveId", HoneyProduct.class);
-            query.setParameter("hiveId", hive.getHiveId());
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<HoneyProduct> query = withFetchGraph(session, session.createQuery(
+                        "FROM HoneyProduct WHERE hive.id = :hiveId", HoneyProduct.class));
+                query.setParameter("hiveId", hive.getHiveId());
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding honey products by hive: " + hive.getHiveId(), e);
             return List.of();
         }
     }
 
+    @Override
+    public List<HoneyProduct> findByBeekeeper(Beekeeper beekeeper) {
+        try {
+            return inSession(session -> {
+                Query<HoneyProduct> query = withFetchGraph(session, session.createQuery(
+                        "FROM HoneyProduct WHERE apiary.beekeeper.id = :beekeeperId", HoneyProduct.class));
+                query.setParameter("beekeeperId", beekeeper.getUserId());
+                return query.getResultList();
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding honey products by beekeeper: " + beekeeper.getUserId(), e);
+            return List.of();
+        }
+    }
+
     @Override
     public List<HoneyProduct> findByNameContaining(String name) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<HoneyProduct> query = session.createQuery(
-                    "FROM HoneyProduct WHERE name LIKE :name", HoneyProduct.class);
-            query.setParameter("name", "%" + name + "%");
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<HoneyProduct> query = withFetchGraph(session, session.createQuery(
+                        "FROM HoneyProduct WHERE name LIKE :name", HoneyProduct.class));
+                query.setParameter("name", "%" + name + "%");
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding honey products by name: " + name, e);
             return List.of();
@@ -62,11 +107,13 @@ public class HoneyProductRepositoryImpl extends AbstractRepository<Integer, Hone
 
     @Override
     public List<HoneyProduct> findByPriceLessThan(BigDecimal price) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<HoneyProduct> query = session.createQuery(
-                    "FROM HoneyProduct WHERE price < :price", HoneyProduct.class);
-            query.setParameter("price", price);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<HoneyProduct> query = withFetchGraph(session, session.createQuery(
+                        "FROM HoneyProduct WHERE price < :price", HoneyProduct.class));
+                query.setParameter("price", price);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding honey products by price less than: " + price, e);
             return List.of();
@@ -75,11 +122,13 @@ public class HoneyProductRepositoryImpl extends AbstractRepository<Integer, Hone
 
     @Override
     public List<HoneyProduct> findByPriceGreaterThan(BigDecimal price) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<HoneyProduct> query = session.createQuery(
-                    "FROM HoneyProduct WHERE price > :price", HoneyProduct.class);
-            query.setParameter("price", price);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<HoneyProduct> query = withFetchGraph(session, session.createQuery(
+                        "FROM HoneyProduct WHERE price > :price", HoneyProduct.class));
+                query.setParameter("price", price);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding honey products by price greater than: " + price, e);
             return List.of();
@@ -88,12 +137,14 @@ public class HoneyProductRepositoryImpl extends AbstractRepository<Integer, Hone
 
     @Override
     public List<HoneyProduct> findByPriceBetween(BigDecimal minPrice, BigDecimal maxPrice) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<HoneyProduct> query = session.createQuery(
-                    "FROM HoneyProduct WHERE price BETWEEN :minPrice AND :maxPrice", HoneyProduct.class);
-            query.setParameter("minPrice", minPrice);
-            query.setParameter("maxPrice", maxPrice);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<HoneyProduct> query = withFetchGraph(session, session.createQuery(
+                        "FROM HoneyProduct WHERE price BETWEEN :minPrice AND :maxPrice", HoneyProduct.class));
+                query.setParameter("minPrice", minPrice);
+                query.setParameter("maxPrice", maxPrice);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding honey products by price between: "
                     + minPrice + " and " + maxPrice, e);
@@ -103,13 +154,271 @@ public class HoneyProductRepositoryImpl extends AbstractRepository<Integer, Hone
 
     @Override
     public List<HoneyProduct> findAvailableProducts() {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<HoneyProduct> query = session.createQuery(
-                    "FROM HoneyProduct WHERE quantity > 0", HoneyProduct.class);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<HoneyProduct> query = withFetchGraph(session, session.createQuery(
+                        "FROM HoneyProduct WHERE quantity > 0", HoneyProduct.class));
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding available honey products", e);
             return List.of();
         }
     }
+
+    @Override
+    public Page<HoneyProduct> findByFilters(String name, String category, BigDecimal minPrice, BigDecimal maxPrice,
+                                            boolean availableOnly, Pageable pageable) {
+        try {
+            return findPage(filterPredicates(name, category, minPrice, maxPrice, availableOnly), SORT_SPEC, pageable);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding honey products by filters: " + name + ", " + category
+                    + ", " + minPrice + ", " + maxPrice, e);
+            return new Page<>(List.of(), pageable.getPage(), pageable.getSize(), 0);
+        }
+    }
+
+    @Override
+    public KeysetPage<HoneyProduct> findByFilters(String name, String category, BigDecimal minPrice, BigDecimal maxPrice,
+                                                  boolean availableOnly, KeysetPageable pageable) {
+        try {
+            return findKeysetPage(filterPredicates(name, category, minPrice, maxPrice, availableOnly),
+                    SORT_SPEC, pageable);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding honey products by filters after cursor: "
+                    + pageable.getCursor(), e);
+            return new KeysetPage<>(List.of(), pageable.getSize(), null);
+        }
+    }
+
+    @Override
+    public long countByApiaryId(Integer apiaryId) {
+        try {
+            return inSession(session -> {
+                Query<Long> query = session.createQuery(
+                        "SELECT COUNT(*) FROM HoneyProduct WHERE apiary.id = :apiaryId", Long.class);
+                query.setParameter("apiaryId", apiaryId);
+                return query.uniqueResult();
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error counting honey products by apiary: " + apiaryId, e);
+            return 0;
+        }
+    }
+
+    @Override
+    public long countByHiveId(Integer hiveId) {
+        try {
+            return inSession(session -> {
+                Query<Long> query = session.createQuery(
+                        "SELECT COUNT(*) FROM HoneyProduct WHERE hive.id = :hiveId", Long.class);
+                query.setParameter("hiveId", hiveId);
+                return query.uniqueResult();
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error counting honey products by hive: " + hiveId, e);
+            return 0;
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> countsByApiaryIds(Collection<Integer> apiaryIds) {
+        Map<Integer, Long> counts = new HashMap<>();
+        apiaryIds.forEach(apiaryId -> counts.put(apiaryId, 0L));
+        if (counts.isEmpty()) {
+            return counts;
+        }
+
+        try {
+            return inSession(session -> {
+                Query<Object[]> query = session.createQuery(
+                        "SELECT p.apiary.id, COUNT(p) FROM HoneyProduct p " +
+                                "WHERE p.apiary.id IN (:apiaryIds) GROUP BY p.apiary.id", Object[].class);
+                // Chunked to stay below the SQL Server limit of 2100 parameters per statement
+                List<Integer> ids = new ArrayList<>(counts.keySet());
+                for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+                    query.setParameterList("apiaryIds", ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size())));
+                    for (Object[] row : query.getResultList()) {
+                        counts.put((Integer) row[0], (Long) row[1]);
+                    }
+                }
+                return counts;
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error counting honey products by apiaries: " + apiaryIds, e);
+            return counts;
+        }
+    }
+
+    @Override
+    public List<HoneyProduct> lockInCarts(Collection<Integer> clientIds) {
+        if (clientIds.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            return inTransaction(session -> {
+                Query<HoneyProduct> query = session.createQuery(
+                        "FROM HoneyProduct p WHERE p.productId IN " +
+                                "(SELECT ci.product.id FROM CartItem ci WHERE ci.cart.client.id IN (:clientIds)) " +
+                                "ORDER BY p.productId", HoneyProduct.class);
+                query.setParameterList("clientIds", clientIds);
+                query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+                return query.getResultList();
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error locking honey products in carts of clients: " + clientIds, e);
+            return List.of();
+        }
+    }
+
+    @Override
+    public boolean decrementQuantity(Integer productId, BigDecimal quantity) {
+        return decrementQuantities(Map.of(productId, quantity));
+    }
+
+    @Override
+    public boolean decrementQuantities(Map<Integer, BigDecimal> quantitiesByProductId) {
+        if (quantitiesByProductId.isEmpty()) {
+            return true;
+        }
+
+        try {
+            return inTransaction(session -> {
+                // Changed as loaded entities, not with a bulk UPDATE: a bulk UPDATE evicts the whole
+                // HoneyProduct cache region, while the versioned update of an entity replaces only
+                // its own cache entry when the transaction commits
+                Map<Integer, HoneyProduct> products = lockByIds(session, quantitiesByProductId.keySet());
+                for (Map.Entry<Integer, BigDecimal> entry : quantitiesByProductId.entrySet()) {
+                    HoneyProduct product = products.get(entry.getKey());
+                    if (product == null || product.getQuantity().compareTo(entry.getValue()) < 0) {
+                        // Nothing was changed yet, so the transaction can carry on
+                        LOGGER.warning("Not enough quantity available for honey product: " + entry.getKey());
+                        return false;
+                    }
+                }
+                for (Map.Entry<Integer, BigDecimal> entry : quantitiesByProductId.entrySet()) {
+                    HoneyProduct product = products.get(entry.getKey());
+                    product.setQuantity(product.getQuantity().subtract(entry.getValue()));
+                }
+                return true;
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error decrementing quantities of honey products: "
+                    + quantitiesByProductId.keySet(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean incrementQuantities(Map<Integer, BigDecimal> quantitiesByProductId) {
+        if (quantitiesByProductId.isEmpty()) {
+            return true;
+        }
+
+        try {
+            return inTransaction(session -> {
+                Map<Integer, HoneyProduct> products = lockByIds(session, quantitiesByProductId.keySet());
+                for (Map.Entry<Integer, BigDecimal> entry : quantitiesByProductId.entrySet()) {
+                    HoneyProduct product = products.get(entry.getKey());
+                    if (product != null) {
+                        product.setQuantity(product.getQuantity().add(entry.getValue()));
+                    }
+                }
+                return true;
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error incrementing quantities of honey products: "
+                    + quantitiesByProductId.keySet(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Load honey products locked for update, so the stock read cannot change before it is written
+     * @param session The session
+     * @param productIds The product IDs
+     * @return The products by ID; products that do not exist are missing
+     */
+    private Map<Integer, HoneyProduct> lockByIds(Session session, Collection<Integer> productIds) {
+        Map<Integer, HoneyProduct> products = new HashMap<>();
+        List<Integer> toLock = new ArrayList<>();
+        boolean stale = false;
+        for (Integer id : new TreeSet<>(productIds)) {
+            HoneyProduct loaded = findLoaded(session, id);
+            if (loaded != null && !session.getCurrentLockMode(loaded).lessThan(LockMode.WRITE)) {
+                // Its row is locked or written in this transaction already, e.g. by lockInCarts,
+                // so the loaded product is current and may carry changes not flushed yet
+                products.put(id, loaded);
+            } else {
+                toLock.add(id);
+                stale |= loaded != null;
+            }
+        }
+
+        // Ascending id order, so concurrent checkouts lock the product rows in the
+        // same order and wait for each other instead of deadlocking
+        if (stale) {
+            // A product loaded unlocked may be out of date, and locking it through a query would
+            // fail its version check instead of waiting for the row: refresh it under the lock
+            for (Integer id : toLock) {
+                HoneyProduct loaded = findLoaded(session, id);
+                if (loaded != null) {
+                    session.refresh(loaded, LockMode.PESSIMISTIC_WRITE);
+                } else {
+                    loaded = session.get(HoneyProduct.class, id, new LockOptions(LockMode.PESSIMISTIC_WRITE));
+                }
+                if (loaded != null) {
+                    products.put(id, loaded);
+                }
+            }
+            return products;
+        }
+
+        Query<HoneyProduct> query = session.createQuery(
+                "FROM HoneyProduct p WHERE p.productId IN (:productIds) ORDER BY p.productId", HoneyProduct.class);
+        query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        for (int from = 0; from < toLock.size(); from += ID_CHUNK_SIZE) {
+            query.setParameterList("productIds", toLock.subList(from, Math.min(from + ID_CHUNK_SIZE, toLock.size())));
+            for (HoneyProduct product : query.getResultList()) {
+                products.put(product.getProductId(), product);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Get a honey product the session has already loaded, without loading it
+     * @param session The session
+     * @param productId The product ID
+     * @return The product, or null if the session has not loaded it
+     */
+    private HoneyProduct findLoaded(Session session, Integer productId) {
+        SessionImplementor source = session.unwrap(SessionImplementor.class);
+        EntityPersister persister = source.getFactory().getMetamodel().entityPersister(HoneyProduct.class);
+        return (HoneyProduct) source.getPersistenceContext().getEntity(source.generateEntityKey(productId, persister));
+    }
+
+    private BiFunction<CriteriaBuilder, Root<HoneyProduct>, List<Predicate>> filterPredicates(
+            String name, String category, BigDecimal minPrice, BigDecimal maxPrice, boolean availableOnly) {
+        return (cb, root) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (name != null) {
+                predicates.add(cb.like(cb.lower(root.<String>get("name")), "%" + name.toLowerCase() + "%"));
+            }
+            if (category != null) {
+                predicates.add(cb.like(cb.lower(root.<String>get("name")), "%" + category.toLowerCase() + "%"));
+            }
+            if (minPrice != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.<BigDecimal>get("price"), minPrice));
+            }
+            if (maxPrice != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.<BigDecimal>get("price"), maxPrice));
+            }
+            if (availableOnly) {
+                predicates.add(cb.greaterThan(root.<BigDecimal>get("quantity"), BigDecimal.ZERO));
+            }
+            return predicates;
+        };
+    }
 }
\ No newline at end of file
@@ -1,14 +1,20 @@
 package org.apiary.repository.impl;
 
-import org.apiary.config.HibernateConfig;
+import org.apiary.model.Beekeeper;
 import org.apiary.model.Client;
 import org.apiary.model.Order;
 import org.apiary.repository.interfaces.OrderRepository;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,30 +22,83 @@ public class OrderRepositoryImpl extends AbstractRepository<Integer, Order> impl
 
     private static final Logger LOGGER = Logger.getLogger(OrderRepositoryImpl.class.getName());
 
+    private static final SortSpec<Order> SORT_SPEC = new SortSpec<Order>("date")
+            .add("date", "date", Order::getDate)
+            .add("total", "total", Order::getTotal)
+            .add("status", "status", Order::getStatus);
+
+    private static final int ID_CHUNK_SIZE = 1000;
+
     public OrderRepositoryImpl() {
-        super(Order.class);
+        super(Order.class, Order.SUMMARY_GRAPH);
     }
 
     @Override
     public List<Order> findByClient(Client client) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Order> query = session.createQuery(
-                    "FROM Order WHERE client.id = :clientId ORDER BY date DESC", Order.class);
-            query.setParameter("clientId", client.getUserId());
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Order> query = withFetchGraph(session, session.createQuery(
+                        "FROM Order WHERE client.id = :clientId ORDER BY date DESC", Order.class));
+                query.setParameter("clientId", client.getUserId());
+                List<Order> orders = query.getResultList();
+                initializeAssociations(session, orders);
+                return orders;
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding orders by client: " + client.getUserId(), e);
             return List.of();
         }
     }
 
+    @Override
+    public KeysetPage<Order> findByClient(Client client, KeysetPageable pageable) {
+        try {
+            return findKeysetPage(
+                    (cb, root) -> List.of(cb.equal(root.get("client").get("userId"), client.getUserId())),
+                    "date", Order::getDate, false, pageable);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding orders by client after cursor: "
+                    + client.getUserId() + ", " + pageable.getCursor(), e);
+            return new KeysetPage<>(List.of(), pageable.getSize(), null);
+        }
+    }
+
+    @Override
+    public Page<Order> findByClient(Client client, Pageable pageable) {
+        try {
+            return findPage(
+                    (cb, root) -> List.of(cb.equal(root.get("client").get("userId"), client.getUserId())),
+                    SORT_SPEC, pageable);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding page of orders by client: " + client.getUserId(), e);
+            return new Page<>(List.of(), pageable.getPage(), pageable.getSize(), 0);
+        }
+    }
+
+    @Override
+    public Optional<Order> findByRequestId(String requestId) {
+        try {
+            return inSession(session -> {
+                Query<Order> query = session.createQuery(
+                        "FROM Order WHERE requestId = :requestId", Order.class);
+                query.setParameter("requestId", requestId);
+                return Optional.ofNullable(query.uniqueResult());
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding order by request ID: " + requestId, e);
+            return Optional.empty();
+        }
+    }
+
     @Override
     public List<Order> findByStatus(String status) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Order> query = session.createQuery(
-                    "FROM Order WHERE status = :status ORDER BY date DESC", Order.class);
-            query.setParameter("status", status);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Order> query = withFetchGraph(session, session.createQuery(
+                        "FROM Order WHERE status = :status ORDER BY date DESC", Order.class));
+                query.setParameter("status", status);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding orders by status: " + status, e);
             return List.of();
@@ -48,11 +107,13 @@ public class OrderRepositoryImpl extends AbstractRepository<Integer, Order> impl
 
     @Override
     public List<Order> findByDateAfter(LocalDateTime date) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Order> query = session.createQuery(
-                    "FROM Order WHERE date > :date ORDER BY date DESC", Order.class);
-            query.setParameter("date", date);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Order> query = withFetchGraph(session, session.createQuery(
+                        "FROM Order WHERE date > :date ORDER BY date DESC", Order.class));
+                query.setParameter("date", date);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding orders by date after: " + date, e);
             return List.of();
@@ -61,11 +122,13 @@ public class OrderRepositoryImpl extends AbstractRepository<Integer, Order> impl
 
     @Override
     public List<Order> findByDateBefore(LocalDateTime date) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Order> query = session.createQuery(
-                    "FROM Order WHERE date < :date ORDER BY date DESC", Order.class);
-            query.setParameter("date", date);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Order> query = withFetchGraph(session, session.createQuery(
+                        "FROM Order WHERE date < :date ORDER BY date DESC", Order.class));
+                query.setParameter("date", date);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding orders by date before: " + date, e);
             return List.of();
@@ -74,16 +137,130 @@ public class OrderRepositoryImpl extends AbstractRepository<Integer, Order> impl
 
     @Override
     public List<Order> findByDateBetween(LocalDateTime startDate, LocalDateTime endDate) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Order> query = session.createQuery(
-                    "FROM Order WHERE date BETWEEN :startDate AND :endDate ORDER BY date DESC", Order.class);
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Order> query = withFetchGraph(session, session.createQuery(
+                        "FROM Order WHERE date BETWEEN :startDate AND :endDate ORDER BY date DESC", Order.class));
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding orders by date between: "
                     + startDate + " and " + endDate, e);
             return List.of();
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<Order> findByBeekeeper(Beekeeper beekeeper, String status,
+                                       LocalDateTime startDate, LocalDateTime endDate) {
+        try {
+            return inSession(session -> {
+                Query<Order> query = withFetchGraph(session, session.createQuery(
+                        "SELECT o FROM Order o" + beekeeperWhereClause(status, startDate, endDate)
+                                + " ORDER BY o.date DESC, o.orderId DESC", Order.class));
+                setBeekeeperParameters(query, beekeeper, status, startDate, endDate);
+                List<Order> orders = query.getResultList();
+                initializeAssociations(session, orders);
+                return orders;
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding orders by beekeeper: " + beekeeper.getUserId(), e);
+            return List.of();
+        }
+    }
+
+    @Override
+    public Page<Order> findByBeekeeper(Beekeeper beekeeper, String status, LocalDateTime startDate,
+                                       LocalDateTime endDate, Pageable pageable) {
+        try {
+            return inSession(session -> {
+                String where = beekeeperWhereClause(status, startDate, endDate);
+
+                Query<Long> countQuery = session.createQuery("SELECT COUNT(o) FROM Order o" + where, Long.class);
+                setBeekeeperParameters(countQuery, beekeeper, status, startDate, endDate);
+                long totalElements = countQuery.uniqueResult();
+                if (totalElements <= pageable.getOffset()) {
+                    return new Page<Order>(List.of(), pageable.getPage(), pageable.getSize(), totalElements);
+                }
+
+                // The sort attribute comes from the whitelist, never from the caller
+                String sortAttribute = SORT_SPEC.resolve(pageable.getSortBy()).getAttribute();
+                String direction = pageable.isSortAscending() ? "ASC" : "DESC";
+                String orderBy = (sortAttribute != null ? " ORDER BY o." + sortAttribute + " " + direction + ", "
+                        : " ORDER BY ") + "o.orderId " + direction;
+
+                Query<Order> query = withFetchGraph(session,
+                        session.createQuery("SELECT o FROM Order o" + where + orderBy, Order.class));
+                setBeekeeperParameters(query, beekeeper, status, startDate, endDate);
+                query.setFirstResult(pageable.getOffset());
+                query.setMaxResults(pageable.getSize());
+                List<Order> orders = query.getResultList();
+                initializeAssociations(session, orders);
+                return new Page<>(orders, pageable.getPage(), pageable.getSize(), totalElements);
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding page of orders by beekeeper: " + beekeeper.getUserId(), e);
+            return new Page<>(List.of(), pageable.getPage(), pageable.getSize(), 0);
+        }
+    }
+
+    /**
+     * Build the WHERE clause selecting orders with at least one item from the beekeeper's apiaries.
+     * EXISTS keeps one row per order without needing DISTINCT over the joined items.
+     */
+    private String beekeeperWhereClause(String status, LocalDateTime startDate, LocalDateTime endDate) {
+        StringBuilder where = new StringBuilder(
+                " WHERE EXISTS (SELECT i.orderItemId FROM OrderItem i"
+                        + " WHERE i.order = o AND i.product.apiary.beekeeper.id = :beekeeperId)");
+        if (status != null) {
+            where.append(" AND o.status = :status");
+        }
+        if (startDate != null) {
+            where.append(" AND o.date >= :startDate");
+        }
+        if (endDate != null) {
+            where.append(" AND o.date <= :endDate");
+        }
+        return where.toString();
+    }
+
+    private void setBeekeeperParameters(Query<?> query, Beekeeper beekeeper, String status,
+                                        LocalDateTime startDate, LocalDateTime endDate) {
+        query.setParameter("beekeeperId", beekeeper.getUserId());
+        if (status != null) {
+            query.setParameter("status", status);
+        }
+        if (startDate != null) {
+            query.setParameter("startDate", startDate);
+        }
+        if (endDate != null) {
+            query.setParameter("endDate", endDate);
+        }
+    }
+
+    /**
+     * Initialize the items (and their products) of already loaded orders with one query per
+     * chunk of ids, so callers can read them after the session is closed. A collection cannot
+     * be part of the fetch graph of a paged query without Hibernate paging in memory.
+     */
+    @Override
+    protected void initializeAssociations(Session session, List<Order> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        List<Integer> orderIds = orders.stream()
+                .map(Order::getOrderId)
+                .collect(Collectors.toList());
+        // SQL Server accepts at most 2100 parameters per statement
+        for (int from = 0; from < orderIds.size(); from += ID_CHUNK_SIZE) {
+            List<Integer> chunk = orderIds.subList(from, Math.min(from + ID_CHUNK_SIZE, orderIds.size()));
+            session.createQuery(
+                            "SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product"
+                                    + " WHERE o.orderId IN (:orderIds)", Order.class)
+                    .setParameterList("orderIds", chunk)
+                    .getResultList();
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package org.apiary.repository.impl;
 
-import org.apiary.config.HibernateConfig;
 import org.apiary.model.Order;
 import org.apiary.model.Payment;
 import org.apiary.repository.interfaces.PaymentRepository;
-import org.hibernate.Session;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
 import org.hibernate.query.Query;
 
 import java.time.LocalDateTime;
@@ -22,11 +22,13 @@ public class PaymentRepositoryImpl extends AbstractRepository<Integer, Payment>
 
     @Override
     public Payment findByOrder(Order order) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Payment> query = session.createQuery(
-                    "FROM Payment WHERE order.id = :orderId", Payment.class);
-            query.setParameter("orderId", order.getOrderId());
-            return query.uniqueResult();
+        try {
+            return inSession(session -> {
+                Query<Payment> query = session.createQuery(
+                        "FROM Payment WHERE order.id = :orderId", Payment.class);
+                query.setParameter("orderId", order.getOrderId());
+                return query.uniqueResult();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding payment by order: " + order.getOrderId(), e);
             return null;
@@ -35,11 +37,13 @@ public class PaymentRepositoryImpl extends AbstractRepository<Integer, Payment>
 
     @Override
     public List<Payment> findByStatus(String status) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Payment> query = session.createQuery(
-                    "FROM Payment WHERE status = :status ORDER BY date DESC", Payment.class);
-            query.setParameter("status", status);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Payment> query = session.createQuery(
+                        "FROM Payment WHERE status = :status ORDER BY date DESC", Payment.class);
+                query.setParameter("status", status);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding payments by status: " + status, e);
             return List.of();
@@ -48,11 +52,13 @@ public class PaymentRepositoryImpl extends AbstractRepository<Integer, Payment>
 
     @Override
     public List<Payment> findByDateAfter(LocalDateTime date) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Payment> query = session.createQuery(
-                    "FROM Payment WHERE date > :date ORDER BY date DESC", Payment.class);
-            query.setParameter("date", date);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Payment> query = session.createQuery(
+                        "FROM Payment WHERE date > :date ORDER BY date DESC", Payment.class);
+                query.setParameter("date", date);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding payments by date after: " + date, e);
             return List.of();
@@ -61,11 +67,13 @@ public class PaymentRepositoryImpl extends AbstractRepository<Integer, Payment>
 
     @Override
     public List<Payment> findByDateBefore(LocalDateTime date) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Payment> query = session.createQuery(
-                    "FROM Payment WHERE date < :date ORDER BY date DESC", Payment.class);
-            query.setParameter("date", date);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Payment> query = session.createQuery(
+                        "FROM Payment WHERE date < :date ORDER BY date DESC", Payment.class);
+                query.setParameter("date", date);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding payments by date before: " + date, e);
             return List.of();
@@ -74,16 +82,32 @@ public class PaymentRepositoryImpl extends AbstractRepository<Integer, Payment>
 
     @Override
     public List<Payment> findByDateBetween(LocalDateTime startDate, LocalDateTime endDate) {
-        try (Session session = HibernateConfig.getSessionFactory().openSession()) {
-            Query<Payment> query = session.createQuery(
-                    "FROM Payment WHERE date BETWEEN :startDate AND :endDate ORDER BY date DESC", Payment.class);
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            return query.getResultList();
+        try {
+            return inSession(session -> {
+                Query<Payment> query = session.createQuery(
+                        "FROM Payment WHERE date BETWEEN :startDate AND :endDate ORDER BY date DESC", Payment.class);
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                return query.getResultList();
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding payments by date between: "
                     + startDate + " and " + endDate, e);
             return List.of();
         }
     }
+
+    @Override
+    public KeysetPage<Payment> findByDateBetween(LocalDateTime startDate, LocalDateTime endDate,
+                                                 KeysetPageable pageable) {
+        try {
+            return findKeysetPage(
+                    (cb, root) -> List.of(cb.between(root.<LocalDateTime>get("date"), startDate, endDate)),
+                    "date", Payment::getDate, false, pageable);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding payments by date between after cursor: "
+                    + startDate + " and " + endDate + ", " + pageable.getCursor(), e);
+            return new KeysetPage<>(List.of(), pageable.getSize(), null);
+        }
+    }
 }
\ No newline at end of file
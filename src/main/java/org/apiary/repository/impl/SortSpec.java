@@ -0,0 +1,87 @@
+package org.apiary.repository.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Whitelisted mapping from the sort keys carried by Pageable/KeysetPageable to entity attributes.
+ * Only mapped keys ever reach a query; unknown keys fall back to the default key.
+ * The key "id" is always accepted and sorts by the identifier alone.
+ * @param <T> The type of the entity
+ */
+final class SortSpec<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(SortSpec.class.getName());
+    static final String ID_KEY = "id";
+
+    private final Map<String, SortField<T>> fields = new HashMap<>();
+    private final String defaultKey;
+
+    /**
+     * Create a new sort spec
+     * @param defaultKey The sort key used when none or an unknown one is requested
+     */
+    SortSpec(String defaultKey) {
+        this.defaultKey = defaultKey;
+    }
+
+    /**
+     * Map a sort key to an entity attribute
+     * @param sortKey The sort key exposed to callers
+     * @param attribute The entity attribute to sort by (should be backed by an index)
+     * @param reader Reads the attribute from an entity, used to build keyset cursors
+     * @return This sort spec
+     */
+    SortSpec<T> add(String sortKey, String attribute, Function<T, ?> reader) {
+        fields.put(sortKey.toLowerCase(), new SortField<>(attribute, reader));
+        return this;
+    }
+
+    /**
+     * Resolve a requested sort key
+     * @param sortKey The requested sort key (may be null)
+     * @return The sort field; its attribute is null when sorting by id only
+     */
+    SortField<T> resolve(String sortKey) {
+        String key = sortKey != null ? sortKey.toLowerCase() : defaultKey;
+        if (ID_KEY.equals(key)) {
+            return SortField.byId();
+        }
+        SortField<T> field = fields.get(key);
+        if (field != null) {
+            return field;
+        }
+        if (sortKey != null) {
+            LOGGER.warning("Unsupported sort key, using default '" + defaultKey + "': " + sortKey);
+        }
+        return ID_KEY.equals(defaultKey) ? SortField.byId() : fields.get(defaultKey);
+    }
+
+    /**
+     * A resolved sort attribute and the function reading it from an entity
+     * @param <T> The type of the entity
+     */
+    static final class SortField<T> {
+        private final String attribute;
+        private final Function<T, ?> reader;
+
+        private SortField(String attribute, Function<T, ?> reader) {
+            this.attribute = attribute;
+            this.reader = reader;
+        }
+
+        static <T> SortField<T> byId() {
+            return new SortField<>(null, null);
+        }
+
+        String getAttribute() {
+            return attribute;
+        }
+
+        Function<T, ?> getReader() {
+            return reader;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package org.apiary.repository.interfaces;
 
 import org.apiary.model.Apiary;
 import org.apiary.model.Beekeeper;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
 
 import java.util.List;
 
@@ -13,6 +15,15 @@ public interface ApiaryRepository extends Repository<Integer, Apiary> {
      */
     List<Apiary> findByBeekeeper(Beekeeper beekeeper);
 
+    /**
+     * Find a page of apiaries owned by a specific beekeeper, sorted by the pageable's
+     * sort key ("name", "location" or "id")
+     * @param beekeeper The beekeeper
+     * @param pageable The pagination information
+     * @return A page of apiaries owned by the beekeeper
+     */
+    Page<Apiary> findByBeekeeper(Beekeeper beekeeper, Pageable pageable);
+
     /**
      * Find apiaries by name (partial match)
      * @param name The name to search for
@@ -1,6 +1,7 @@
 package org.apiary.repository.interfaces;
 
 import org.apiary.model.CartItem;
+import org.apiary.model.Client;
 import org.apiary.model.HoneyProduct;
 import org.apiary.model.ShoppingCart;
 
@@ -15,6 +16,13 @@ public interface CartItemRepository extends Repository<Integer, CartItem> {
      */
     List<CartItem> findByCart(ShoppingCart cart);
 
+    /**
+     * Find all cart items in the shopping cart of a client, with their products, in one query
+     * @param client The client
+     * @return A list of cart items in the client's shopping cart, empty if the client has no cart
+     */
+    List<CartItem> findByClient(Client client);
+
     /**
      * Find a cart item for a specific product in a specific shopping cart
      * @param cart The shopping cart
@@ -28,4 +36,11 @@ public interface CartItemRepository extends Repository<Integer, CartItem> {
      * @param cart The shopping cart
      */
     void deleteByCart(ShoppingCart cart);
+
+    /**
+     * Delete all cart items in the shopping cart of a client with one bulk DELETE
+     * @param client The client
+     * @return The number of cart items deleted
+     */
+    int deleteByClient(Client client);
 }
\ No newline at end of file
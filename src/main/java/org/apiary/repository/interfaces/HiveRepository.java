@@ -3,7 +3,9 @@ package org.apiary.repository.interfaces;
 import org.apiary.model.Apiary;
 import org.apiary.model.Hive;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface HiveRepository extends Repository<Integer, Hive> {
     /**
@@ -34,4 +36,11 @@ public interface HiveRepository extends Repository<Integer, Hive> {
      * @return The number of hives
      */
     long countByApiary(Apiary apiary);
+
+    /**
+     * Count the hives of several apiaries with one grouped query
+     * @param apiaryIds The apiary IDs
+     * @return The number of hives by apiary ID (0 for apiaries without hives)
+     */
+    Map<Integer, Long> countsByApiaryIds(Collection<Integer> apiaryIds);
 }
\ No newline at end of file
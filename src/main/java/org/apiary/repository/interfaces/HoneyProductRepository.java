@@ -1,11 +1,18 @@
 package org.apiary.repository.interfaces;
 
 import org.apiary.model.Apiary;
+import org.apiary.model.Beekeeper;
 import org.apiary.model.Hive;
 import org.apiary.model.HoneyProduct;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface HoneyProductRepository extends Repository<Integer, HoneyProduct> {
     /**
@@ -22,6 +29,13 @@ public interface HoneyProductRepository extends Repository<Integer, HoneyProduct
      */
     List<HoneyProduct> findByHive(Hive hive);
 
+    /**
+     * Find all honey products from the apiaries of a beekeeper
+     * @param beekeeper The beekeeper
+     * @return A list of honey products of the beekeeper
+     */
+    List<HoneyProduct> findByBeekeeper(Beekeeper beekeeper);
+
     /**
      * Find honey products by name (partial match)
      * @param name The name to search for
@@ -56,4 +70,87 @@ public interface HoneyProductRepository extends Repository<Integer, HoneyProduct
      * @return A list of honey products with available quantity
      */
     List<HoneyProduct> findAvailableProducts();
-}
\ No newline at end of file
+
+    /**
+     * Count the honey products of an apiary
+     * @param apiaryId The apiary ID
+     * @return The number of honey products of the apiary
+     */
+    long countByApiaryId(Integer apiaryId);
+
+    /**
+     * Count the honey products of a hive
+     * @param hiveId The hive ID
+     * @return The number of honey products of the hive
+     */
+    long countByHiveId(Integer hiveId);
+
+    /**
+     * Count the honey products of several apiaries with one grouped query
+     * @param apiaryIds The apiary IDs
+     * @return The number of honey products by apiary ID (0 for apiaries without products)
+     */
+    Map<Integer, Long> countsByApiaryIds(Collection<Integer> apiaryIds);
+
+    /**
+     * Find a page of honey products matching the given filters; filtering, paging
+     * and counting are all done by the database
+     * @param name The name to search for (partial match), or null for any name
+     * @param category The category to search for in the name (partial match), or null for any category
+     * @param minPrice The minimum price (inclusive), or null for no minimum
+     * @param maxPrice The maximum price (inclusive), or null for no maximum
+     * @param availableOnly true to only include products with available quantity
+     * @param pageable The pagination information
+     * @return A page of matching honey products
+     */
+    Page<HoneyProduct> findByFilters(String name, String category, BigDecimal minPrice, BigDecimal maxPrice,
+                                     boolean availableOnly, Pageable pageable);
+
+    /**
+     * Find the next keyset page of honey products matching the given filters
+     * @param name The name to search for (partial match), or null for any name
+     * @param category The category to search for in the name (partial match), or null for any category
+     * @param minPrice The minimum price (inclusive), or null for no minimum
+     * @param maxPrice The maximum price (inclusive), or null for no maximum
+     * @param availableOnly true to only include products with available quantity
+     * @param pageable The keyset pagination information
+     * @return A keyset page of matching honey products
+     */
+    KeysetPage<HoneyProduct> findByFilters(String name, String category, BigDecimal minPrice, BigDecimal maxPrice,
+                                           boolean availableOnly, KeysetPageable pageable);
+
+    /**
+     * Lock the honey products in the shopping carts of clients for update, in ascending ID
+     * order, before the carts are read. A checkout that reads its cart first loads the
+     * products unlocked, and could then not lock them once another checkout has changed them.
+     * @param clientIds The IDs of the clients
+     * @return The locked products
+     */
+    List<HoneyProduct> lockInCarts(Collection<Integer> clientIds);
+
+    /**
+     * Atomically subtract a quantity from the stock of a honey product, but only if
+     * enough stock is available
+     * @param productId The ID of the product
+     * @param quantity The quantity to subtract
+     * @return true if the stock was decremented, false if the product does not exist or has too little stock
+     */
+    boolean decrementQuantity(Integer productId, BigDecimal quantity);
+
+    /**
+     * Atomically subtract quantities from the stock of several honey products in one transaction,
+     * locking the products and changing them as entities, so only their own second-level cache
+     * entries are replaced; either all products are decremented or none
+     * @param quantitiesByProductId The quantity to subtract, by product ID
+     * @return true if all stocks were decremented, false if any product does not exist or has too little stock
+     */
+    boolean decrementQuantities(Map<Integer, BigDecimal> quantitiesByProductId);
+
+    /**
+     * Add quantities back to the stock of several honey products in one transaction, e.g. when
+     * an order is canceled; products that no longer exist are skipped
+     * @param quantitiesByProductId The quantity to add, by product ID
+     * @return true if the stocks were incremented, false if they could not be written
+     */
+    boolean incrementQuantities(Map<Integer, BigDecimal> quantitiesByProductId);
+}
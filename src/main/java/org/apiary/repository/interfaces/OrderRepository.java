@@ -1,10 +1,16 @@
 package org.apiary.repository.interfaces;
 
+import org.apiary.model.Beekeeper;
 import org.apiary.model.Client;
 import org.apiary.model.Order;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends Repository<Integer, Order> {
     /**
@@ -14,6 +20,30 @@ public interface OrderRepository extends Repository<Integer, Order> {
      */
     List<Order> findByClient(Client client);
 
+    /**
+     * Find the next keyset page of orders for a specific client, newest first
+     * @param client The client
+     * @param pageable The keyset pagination information
+     * @return A keyset page of orders for the client
+     */
+    KeysetPage<Order> findByClient(Client client, KeysetPageable pageable);
+
+    /**
+     * Find a page of orders for a specific client, sorted by the pageable's
+     * sort key ("date", "total", "status" or "id")
+     * @param client The client
+     * @param pageable The pagination information
+     * @return A page of orders for the client
+     */
+    Page<Order> findByClient(Client client, Pageable pageable);
+
+    /**
+     * Find the order placed for a checkout
+     * @param requestId The request ID of the checkout
+     * @return An Optional containing the order, or empty if none was placed for the checkout
+     */
+    Optional<Order> findByRequestId(String requestId);
+
     /**
      * Find orders with a specific status
      * @param status The status to search for
@@ -42,4 +72,27 @@ public interface OrderRepository extends Repository<Integer, Order> {
      * @return A list of orders created between the specified dates
      */
     List<Order> findByDateBetween(LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Find orders containing products from a beekeeper's apiaries, newest first
+     * @param beekeeper The beekeeper
+     * @param status The status filter, or null for any status
+     * @param startDate The start date filter (inclusive), or null for no lower bound
+     * @param endDate The end date filter (inclusive), or null for no upper bound
+     * @return A list of matching orders
+     */
+    List<Order> findByBeekeeper(Beekeeper beekeeper, String status, LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Find a page of orders containing products from a beekeeper's apiaries, sorted by
+     * the pageable's sort key ("date", "total", "status" or "id")
+     * @param beekeeper The beekeeper
+     * @param status The status filter, or null for any status
+     * @param startDate The start date filter (inclusive), or null for no lower bound
+     * @param endDate The end date filter (inclusive), or null for no upper bound
+     * @param pageable The pagination information
+     * @return A page of matching orders
+     */
+    Page<Order> findByBeekeeper(Beekeeper beekeeper, String status, LocalDateTime startDate, LocalDateTime endDate,
+                                Pageable pageable);
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package org.apiary.repository.interfaces;
 
 import org.apiary.model.Order;
 import org.apiary.model.Payment;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -43,4 +45,13 @@ public interface PaymentRepository extends Repository<Integer, Payment> {
      * @return A list of payments made between the specified dates
      */
     List<Payment> findByDateBetween(LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Find the next keyset page of payments made between two dates, newest first
+     * @param startDate The start date
+     * @param endDate The end date
+     * @param pageable The keyset pagination information
+     * @return A keyset page of payments made between the specified dates
+     */
+    KeysetPage<Payment> findByDateBetween(LocalDateTime startDate, LocalDateTime endDate, KeysetPageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package org.apiary.service;
+
+import java.util.UUID;
+
+/**
+ * Thrown when a checkout could not be placed right away but is recorded in the order
+ * journal, from which it is placed as soon as the database takes it. The checkout has not
+ * failed: the order appears with the client's orders once it is placed.
+ */
+public class OrderQueuedException extends RuntimeException {
+
+    private final UUID requestId;
+
+    /**
+     * @param requestId The request ID of the checkout, carried by the order once it is placed
+     * @param cause Why the checkout could not be placed right away, or null if it took too long
+     */
+    public OrderQueuedException(UUID requestId, Throwable cause) {
+        super("Checkout " + requestId + " is recorded and will be placed as soon as possible", cause);
+        this.requestId = requestId;
+    }
+
+    public UUID getRequestId() {
+        return requestId;
+    }
+}
@@ -5,45 +5,58 @@ import org.apiary.service.impl.*;
 import org.apiary.service.interfaces.*;
 
 /**
- * Factory class for creating service instances
+ * Factory class for creating service instances.
+ * Every service is wrapped by ServiceMetrics, which times each call.
  */
 public class ServiceFactory {
 
     // Services
-    private static final UserService userService = new UserServiceImpl(
-            RepositoryFactory.getUserRepository());
-
-    private static final ApiaryService apiaryService = new ApiaryServiceImpl(
-            RepositoryFactory.getApiaryRepository());
-
-    private static final HiveService hiveService = new HiveServiceImpl(
-            RepositoryFactory.getHiveRepository(),
-            apiaryService);
-
-    private static final HoneyProductService honeyProductService = new HoneyProductServiceImpl(
-            RepositoryFactory.getHoneyProductRepository(),
-            apiaryService,
-            hiveService);
-
-    private static final ShoppingCartService shoppingCartService = new ShoppingCartServiceImpl(
-            RepositoryFactory.getShoppingCartRepository(),
-            RepositoryFactory.getCartItemRepository(),
-            RepositoryFactory.getHoneyProductRepository());
-
-    private static final PaymentService paymentService = new PaymentServiceImpl(
-            RepositoryFactory.getPaymentRepository());
-
-    private static final OrderService orderService = new OrderServiceImpl(
-            RepositoryFactory.getOrderRepository(),
-            RepositoryFactory.getOrderItemRepository(),
-            shoppingCartService,
-            paymentService,
-            honeyProductService);
+    private static final UserService userService = instrument(UserService.class,
+            new UserServiceImpl(
+                    RepositoryFactory.getUserRepository()));
+
+    private static final ApiaryService apiaryService = instrument(ApiaryService.class,
+            new ApiaryServiceImpl(
+                    RepositoryFactory.getApiaryRepository()));
+
+    private static final HiveService hiveService = instrument(HiveService.class,
+            new HiveServiceImpl(
+                    RepositoryFactory.getHiveRepository(),
+                    apiaryService));
+
+    private static final HoneyProductService honeyProductService = instrument(HoneyProductService.class,
+            new HoneyProductServiceImpl(
+                    RepositoryFactory.getHoneyProductRepository(),
+                    apiaryService,
+                    hiveService));
+
+    private static final ShoppingCartService shoppingCartService = instrument(ShoppingCartService.class,
+            new ShoppingCartServiceImpl(
+                    RepositoryFactory.getShoppingCartRepository(),
+                    RepositoryFactory.getCartItemRepository(),
+                    RepositoryFactory.getHoneyProductRepository()));
+
+    private static final PaymentService paymentService = instrument(PaymentService.class,
+            new PaymentServiceImpl(
+                    RepositoryFactory.getPaymentRepository()));
+
+    private static final OrderService orderService = instrument(OrderService.class,
+            new OrderServiceImpl(
+                    RepositoryFactory.getOrderRepository(),
+                    RepositoryFactory.getOrderItemRepository(),
+                    RepositoryFactory.getCartItemRepository(),
+                    RepositoryFactory.getHoneyProductRepository(),
+                    RepositoryFactory.getUserRepository(),
+                    paymentService));
 
     private ServiceFactory() {
         // Private constructor to prevent instantiation
     }
 
+    private static <T> T instrument(Class<T> serviceInterface, T service) {
+        return ServiceMetrics.instrument(serviceInterface, service);
+    }
+
     public static UserService getUserService() {
         return userService;
     }
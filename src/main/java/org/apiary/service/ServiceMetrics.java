@@ -0,0 +1,83 @@
+package org.apiary.service;
+
+import org.apiary.metrics.MetricsRegistry;
+import org.apiary.metrics.Timer;
+import org.apiary.metrics.jfr.ServiceCallEvent;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Times every service call.
+ * Services handed out by ServiceFactory are wrapped in a proxy that records the latency of
+ * each method in the timer service.&lt;ServiceInterface&gt;.&lt;method&gt; and counts the calls
+ * that threw in service.&lt;ServiceInterface&gt;.&lt;method&gt;.errors (see MetricsRegistry).
+ * Each call is also a ServiceCallEvent for JDK Flight Recorder recordings. Calls returning a
+ * CompletableFuture are timed until it completes.
+ * With metrics.enabled=false the services are returned unwrapped.
+ */
+public final class ServiceMetrics {
+
+    // Prevent instantiation
+    private ServiceMetrics() {
+    }
+
+    /**
+     * Wrap a service so that its calls are timed
+     * @param serviceInterface The service interface
+     * @param service The service implementation
+     * @param <T> The type of the service
+     * @return The timed service, or the service itself if metrics are off
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T instrument(Class<T> serviceInterface, T service) {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        if (!registry.isEnabled()) {
+            return service;
+        }
+
+        // Created up front so every method shows up over JMX before its first call
+        String prefix = "service." + serviceInterface.getSimpleName() + ".";
+        Map<Method, Timer> timers = new HashMap<>();
+        for (Method method : serviceInterface.getMethods()) {
+            timers.put(method, registry.timer(prefix + method.getName()));
+        }
+
+        return (T) Proxy.newProxyInstance(serviceInterface.getClassLoader(), new Class<?>[]{serviceInterface},
+                (proxy, method, args) -> {
+                    Timer timer = timers.get(method);
+                    if (timer == null) {
+                        return method.invoke(service, args);
+                    }
+
+                    ServiceCallEvent event = new ServiceCallEvent();
+                    event.begin();
+                    long start = System.nanoTime();
+                    Object result = null;
+                    boolean failed = false;
+                    try {
+                        result = method.invoke(service, args);
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        failed = true;
+                        registry.counter(prefix + method.getName() + ".errors").increment();
+                        throw e.getCause();
+                    } finally {
+                        if (result instanceof CompletableFuture) {
+                            // Asynchronous calls take until their result completes
+                            ((CompletableFuture<?>) result).whenComplete((value, error) -> {
+                                timer.record(System.nanoTime() - start);
+                                event.complete(serviceInterface, method, args, value, error != null);
+                            });
+                        } else {
+                            timer.record(System.nanoTime() - start);
+                            event.complete(serviceInterface, method, args, result, failed);
+                        }
+                    }
+                });
+    }
+}
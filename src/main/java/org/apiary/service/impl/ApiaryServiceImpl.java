@@ -6,6 +6,8 @@ import org.apiary.repository.interfaces.ApiaryRepository;
 import org.apiary.service.interfaces.ApiaryService;
 import org.apiary.utils.events.EntityChangeEvent;
 import org.apiary.utils.observer.EventManager;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
 
 import java.util.List;
 import java.util.Optional;
@@ -54,7 +56,7 @@ public class ApiaryServiceImpl extends EventManager<EntityChangeEvent<?>> implem
             oldApiary.setApiaryId(apiary.getApiaryId());
 
             // Check if the apiary belongs to the beekeeper
-            if (!apiary.getBeekeeper().equals(beekeeper)) {
+            if (!apiary.getBeekeeper().getUserId().equals(beekeeper.getUserId())) {
                 LOGGER.warning("Apiary does not belong to beekeeper: " + beekeeper.getUsername());
                 return null;
             }
@@ -118,6 +120,16 @@ public class ApiaryServiceImpl extends EventManager<EntityChangeEvent<?>> implem
         }
     }
 
+    @Override
+    public Page<Apiary> findByBeekeeper(Beekeeper beekeeper, Pageable pageable) {
+        try {
+            return apiaryRepository.findByBeekeeper(beekeeper, pageable);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding apiaries by beekeeper: " + beekeeper.getUsername(), e);
+            return new Page<>(List.of(), pageable.getPage(), pageable.getSize(), 0);
+        }
+    }
+
     @Override
     public List<Apiary> findByNameContaining(String name) {
         try {
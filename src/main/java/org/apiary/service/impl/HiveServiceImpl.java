@@ -9,7 +9,9 @@ import org.apiary.service.interfaces.HiveService;
 import org.apiary.utils.events.EntityChangeEvent;
 import org.apiary.utils.observer.EventManager;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -186,6 +188,16 @@ public class HiveServiceImpl extends EventManager<EntityChangeEvent<?>> implemen
         }
     }
 
+    @Override
+    public Map<Integer, Long> countByApiaries(Collection<Integer> apiaryIds) {
+        try {
+            return hiveRepository.countsByApiaryIds(apiaryIds);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error counting hives by apiaries: " + apiaryIds, e);
+            return Map.of();
+        }
+    }
+
     @Override
     public boolean isHiveOwnedByBeekeeper(Integer hiveId, Beekeeper beekeeper) {
         try {
@@ -10,16 +10,18 @@ import org.apiary.service.interfaces.HiveService;
 import org.apiary.service.interfaces.HoneyProductService;
 import org.apiary.utils.events.EntityChangeEvent;
 import org.apiary.utils.observer.EventManager;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
 import org.apiary.utils.pagination.Page;
 import org.apiary.utils.pagination.Pageable;
-import org.apiary.utils.pagination.PaginationUtils;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 public class HoneyProductServiceImpl extends EventManager<EntityChangeEvent<?>> implements HoneyProductService {
 
@@ -49,7 +51,7 @@ public class HoneyProductServiceImpl extends EventManager<EntityChangeEvent<?>>
             }
 
             // Check if hive belongs to apiary (if provided)
-            if (hive != null && !hive.getApiary().equals(apiary)) {
+            if (hive != null && !hive.getApiary().getApiaryId().equals(apiary.getApiaryId())) {
                 LOGGER.warning("Hive does not belong to apiary: " +
                         hive.getHiveId() + ", " + apiary.getApiaryId());
                 return null;
@@ -76,34 +78,42 @@ public class HoneyProductServiceImpl extends EventManager<EntityChangeEvent<?>>
                                            BigDecimal price, BigDecimal quantity,
                                            Beekeeper beekeeper) {
         try {
-            Optional<HoneyProduct> productOpt = honeyProductRepository.findById(productId);
-            if (productOpt.isEmpty()) {
-                LOGGER.warning("Honey product not found: " + productId);
-                return null;
-            }
-
-            HoneyProduct product = productOpt.get();
-            HoneyProduct oldProduct = new HoneyProduct(product.getName(), product.getDescription(),
-                    product.getPrice(), product.getQuantity(), product.getApiary());
-            oldProduct.setProductId(product.getProductId());
-            oldProduct.setHive(product.getHive());
-
-            // Check if product belongs to beekeeper
-            if (!isProductOwnedByBeekeeper(productId, beekeeper)) {
-                LOGGER.warning("Honey product does not belong to beekeeper: " +
-                        productId + ", " + beekeeper.getUsername());
+            HoneyProduct[] oldProduct = new HoneyProduct[1];
+
+            // Re-read and re-apply the edit if a checkout changed the product in between
+            HoneyProduct updatedProduct = OptimisticRetry.execute(() -> {
+                Optional<HoneyProduct> productOpt = honeyProductRepository.findById(productId);
+                if (productOpt.isEmpty()) {
+                    LOGGER.warning("Honey product not found: " + productId);
+                    return null;
+                }
+
+                HoneyProduct product = productOpt.get();
+                oldProduct[0] = new HoneyProduct(product.getName(), product.getDescription(),
+                        product.getPrice(), product.getQuantity(), product.getApiary());
+                oldProduct[0].setProductId(product.getProductId());
+                oldProduct[0].setHive(product.getHive());
+
+                // Check if product belongs to beekeeper
+                if (!isProductOwnedByBeekeeper(productId, beekeeper)) {
+                    LOGGER.warning("Honey product does not belong to beekeeper: " +
+                            productId + ", " + beekeeper.getUsername());
+                    return null;
+                }
+
+                product.setName(name);
+                product.setDescription(description);
+                product.setPrice(price);
+                product.setQuantity(quantity);
+
+                return honeyProductRepository.save(product);
+            });
+            if (updatedProduct == null) {
                 return null;
             }
 
-            product.setName(name);
-            product.setDescription(description);
-            product.setPrice(price);
-            product.setQuantity(quantity);
-
-            HoneyProduct updatedProduct = honeyProductRepository.save(product);
-
-            // Notify observers
-            notifyObservers(new EntityChangeEvent<>(EntityChangeEvent.Type.UPDATED, updatedProduct, oldProduct));
+            // Notify observers once the update is committed
+            notifyObservers(new EntityChangeEvent<>(EntityChangeEvent.Type.UPDATED, updatedProduct, oldProduct[0]));
 
             LOGGER.info("Updated honey product: " + productId);
             return updatedProduct;
@@ -258,27 +268,30 @@ public class HoneyProductServiceImpl extends EventManager<EntityChangeEvent<?>>
     @Override
     public boolean updateQuantityAfterPurchase(Integer productId, BigDecimal quantityToSubtract) {
         try {
-            Optional<HoneyProduct> productOpt = honeyProductRepository.findById(productId);
-            if (productOpt.isEmpty()) {
-                LOGGER.warning("Honey product not found: " + productId);
-                return false;
+            // The product is locked while its stock is checked and decremented, so this
+            // cannot interleave with another checkout
+            boolean updated = honeyProductRepository.decrementQuantity(productId, quantityToSubtract);
+            if (updated) {
+                LOGGER.info("Updated quantity for honey product: " + productId);
             }
+            return updated;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error updating quantity for honey product: " + productId, e);
+            return false;
+        }
+    }
 
-            HoneyProduct product = productOpt.get();
-
-            // Check if there is enough quantity
-            if (product.getQuantity().compareTo(quantityToSubtract) < 0) {
-                LOGGER.warning("Not enough quantity available for honey product: " + productId);
-                return false;
+    @Override
+    public boolean updateQuantitiesAfterPurchase(Map<Integer, BigDecimal> quantitiesByProductId) {
+        try {
+            boolean updated = honeyProductRepository.decrementQuantities(quantitiesByProductId);
+            if (updated) {
+                LOGGER.info("Updated quantities for honey products: " + quantitiesByProductId.keySet());
             }
-
-            // Update quantity
-            product.setQuantity(product.getQuantity().subtract(quantityToSubtract));
-            honeyProductRepository.save(product);
-            LOGGER.info("Updated quantity for honey product: " + productId);
-            return true;
+            return updated;
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error updating quantity for honey product: " + productId, e);
+            LOGGER.log(Level.SEVERE, "Error updating quantities for honey products: "
+                    + quantitiesByProductId.keySet(), e);
             return false;
         }
     }
@@ -286,25 +299,27 @@ public class HoneyProductServiceImpl extends EventManager<EntityChangeEvent<?>>
     @Override
     public long countProductsByApiary(Integer apiaryId) {
         try {
-            Optional<Apiary> apiaryOpt = apiaryService.findById(apiaryId);
-            if (apiaryOpt.isEmpty()) {
-                return 0;
-            }
-            return honeyProductRepository.findByApiary(apiaryOpt.get()).size();
+            return honeyProductRepository.countByApiaryId(apiaryId);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error counting products by apiary: " + apiaryId, e);
             return 0;
         }
     }
 
+    @Override
+    public Map<Integer, Long> countProductsByApiaries(Collection<Integer> apiaryIds) {
+        try {
+            return honeyProductRepository.countsByApiaryIds(apiaryIds);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error counting products by apiaries: " + apiaryIds, e);
+            return Map.of();
+        }
+    }
+
     @Override
     public long countProductsByHive(Integer hiveId) {
         try {
-            Optional<Hive> hiveOpt = hiveService.findById(hiveId);
-            if (hiveOpt.isEmpty()) {
-                return 0;
-            }
-            return honeyProductRepository.findByHive(hiveOpt.get()).size();
+            return honeyProductRepository.countByHiveId(hiveId);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error counting products by hive: " + hiveId, e);
             return 0;
@@ -314,10 +329,7 @@ public class HoneyProductServiceImpl extends EventManager<EntityChangeEvent<?>>
     @Override
     public List<HoneyProduct> findByBeekeeper(Beekeeper beekeeper) {
         try {
-            List<Apiary> apiaries = apiaryService.findByBeekeeper(beekeeper);
-            return apiaries.stream()
-                    .flatMap(apiary -> honeyProductRepository.findByApiary(apiary).stream())
-                    .collect(Collectors.toList());
+            return honeyProductRepository.findByBeekeeper(beekeeper);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding products by beekeeper: " + beekeeper.getUsername(), e);
             return List.of();
@@ -327,25 +339,7 @@ public class HoneyProductServiceImpl extends EventManager<EntityChangeEvent<?>>
     @Override
     public Page<HoneyProduct> findByFilters(String category, BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
         try {
-            List<HoneyProduct> allProducts = honeyProductRepository.findAll();
-
-            // Apply filters
-            List<HoneyProduct> filteredProducts = allProducts.stream()
-                    .filter(product -> {
-                        if (category != null && !product.getName().toLowerCase().contains(category.toLowerCase())) {
-                            return false;
-                        }
-                        if (minPrice != null && product.getPrice().compareTo(minPrice) < 0) {
-                            return false;
-                        }
-                        if (maxPrice != null && product.getPrice().compareTo(maxPrice) > 0) {
-                            return false;
-                        }
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-
-            return PaginationUtils.createPage(filteredProducts, pageable);
+            return honeyProductRepository.findByFilters(null, category, minPrice, maxPrice, false, pageable);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding products by filters", e);
             return new Page<>(List.of(), pageable.getPage(), pageable.getSize(), 0);
@@ -355,8 +349,7 @@ public class HoneyProductServiceImpl extends EventManager<EntityChangeEvent<?>>
     @Override
     public Page<HoneyProduct> findAvailableProducts(Pageable pageable) {
         try {
-            List<HoneyProduct> availableProducts = honeyProductRepository.findAvailableProducts();
-            return PaginationUtils.createPage(availableProducts, pageable);
+            return honeyProductRepository.findByFilters(null, null, null, null, true, pageable);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding available products", e);
             return new Page<>(List.of(), pageable.getPage(), pageable.getSize(), 0);
@@ -366,28 +359,20 @@ public class HoneyProductServiceImpl extends EventManager<EntityChangeEvent<?>>
     @Override
     public Page<HoneyProduct> findByNameContaining(String name, String category, BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
         try {
-            List<HoneyProduct> allProducts = honeyProductRepository.findByNameContaining(name);
-
-            // Apply additional filters
-            List<HoneyProduct> filteredProducts = allProducts.stream()
-                    .filter(product -> {
-                        if (category != null && !product.getName().toLowerCase().contains(category.toLowerCase())) {
-                            return false;
-                        }
-                        if (minPrice != null && product.getPrice().compareTo(minPrice) < 0) {
-                            return false;
-                        }
-                        if (maxPrice != null && product.getPrice().compareTo(maxPrice) > 0) {
-                            return false;
-                        }
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-
-            return PaginationUtils.createPage(filteredProducts, pageable);
+            return honeyProductRepository.findByFilters(name, category, minPrice, maxPrice, false, pageable);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding products by name containing: " + name, e);
             return new Page<>(List.of(), pageable.getPage(), pageable.getSize(), 0);
         }
     }
+
+    @Override
+    public KeysetPage<HoneyProduct> findByFilters(String category, BigDecimal minPrice, BigDecimal maxPrice, KeysetPageable pageable) {
+        try {
+            return honeyProductRepository.findByFilters(null, category, minPrice, maxPrice, false, pageable);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding products by filters", e);
+            return new KeysetPage<>(List.of(), pageable.getSize(), null);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package org.apiary.service.impl;
+
+import org.apiary.repository.UnitOfWork;
+import org.hibernate.StaleStateException;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Runs read-modify-write work in a unit of work and runs it again when it loses an
+ * optimistic locking race (a versioned row was changed by another writer in between).
+ * The work must re-read everything it modifies, since each attempt starts with a fresh session.
+ */
+final class OptimisticRetry {
+
+    private static final Logger LOGGER = Logger.getLogger(OptimisticRetry.class.getName());
+    static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_BACKOFF_MILLIS = 20;
+
+    // Prevent instantiation
+    private OptimisticRetry() {
+    }
+
+    /**
+     * Execute work in its own unit of work, retrying on optimistic locking conflicts
+     * @param work The work to execute
+     * @param <R> The type of the result
+     * @return The result of the work
+     * @throws RuntimeException the last error if the work still conflicts after MAX_ATTEMPTS, or any other error
+     */
+    static <R> R execute(Supplier<R> work) {
+        // Inside an outer unit of work the conflict poisons the shared session; let the outer caller decide
+        if (UnitOfWork.isActive()) {
+            return work.get();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return UnitOfWork.execute(work);
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS || !isConflict(e)) {
+                    throw e;
+                }
+                LOGGER.info("Optimistic locking conflict, retrying (attempt " + (attempt + 1) + " of " + MAX_ATTEMPTS + ")");
+                backOff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Check if an error was caused by an optimistic locking conflict
+     * @param error The error
+     * @return true if the error or one of its causes is an optimistic locking failure, false otherwise
+     */
+    static boolean isConflict(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof OptimisticLockException || t instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void backOff(int attempt) {
+        // Randomized so that the competing writers do not collide again on the next attempt
+        long millis = BASE_BACKOFF_MILLIS * attempt + ThreadLocalRandom.current().nextLong(BASE_BACKOFF_MILLIS);
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.apiary.service.impl;
+
+import org.apiary.metrics.Counter;
+import org.apiary.metrics.MetricsRegistry;
+import org.apiary.model.Order;
+import org.apiary.repository.UnitOfWork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Group commit for order placement. Checkouts submitted within maxWaitMillis of each other
+ * are placed by one worker in one unit of work, up to maxBatchSize at a time, so a burst
+ * of checkouts pays for one commit per batch instead of one per order.
+ * Before its orders are placed, a batch locks all the rows they will lock in one go, in one
+ * order (the products of all its carts, in ascending ID order), so two batches, or a batch and
+ * a lone checkout, sharing products wait for each other instead of deadlocking on the locks
+ * their orders would take one after another.
+ * If the batch cannot commit, each of its checkouts is placed again in a unit of work of
+ * its own, so one failing order does not take the others with it; a checkout that fails
+ * on its own too completes with the error. Checkouts beyond maxQueued waiting fail right away.
+ */
+final class OrderIntake {
+
+    private static final Logger LOGGER = Logger.getLogger(OrderIntake.class.getName());
+
+    private final Function<OrderRequest, Order> placement;
+    private final Consumer<List<OrderRequest>> batchLock;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Checkout> queue;
+
+    private final Counter batches;
+    private final Counter batchedOrders;
+    private final Counter batchFailures;
+    private final Counter rejected;
+
+    /**
+     * @param placement Places the order of a request inside the active unit of work; returns null
+     *                  if the cart cannot be ordered, and throws or marks the unit of work for
+     *                  rollback if the order could not be written
+     * @param batchLock Locks, inside the active unit of work and in a fixed order, the rows the
+     *                  placements of a batch will lock
+     * @param workers The number of batches placed at once
+     * @param maxBatchSize The maximum number of checkouts per batch
+     * @param maxWaitMillis How long a batch waits for more checkouts after its first one
+     * @param maxQueued The maximum number of checkouts waiting for a batch
+     */
+    OrderIntake(Function<OrderRequest, Order> placement, Consumer<List<OrderRequest>> batchLock,
+                int workers, int maxBatchSize, long maxWaitMillis, int maxQueued) {
+        this.placement = placement;
+        this.batchLock = batchLock;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, maxQueued));
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        this.batches = registry.counter("orders.intake.batches");
+        this.batchedOrders = registry.counter("orders.intake.orders");
+        this.batchFailures = registry.counter("orders.intake.batchFailures");
+        this.rejected = registry.counter("orders.intake.rejected");
+        registry.gauge("orders.intake.queued", queue::size);
+
+        for (int i = 1; i <= Math.max(1, workers); i++) {
+            Thread worker = new Thread(this::work, "order-intake-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queue a checkout for the next batch
+     * @param request The checkout
+     * @return The placed order once its batch has committed, null if the cart could not be
+     * ordered, or the error if the order could not be written or queued
+     */
+    CompletableFuture<Order> submit(OrderRequest request) {
+        Checkout checkout = new Checkout(request);
+        if (!queue.offer(checkout)) {
+            rejected.increment();
+            checkout.result.completeExceptionally(new RejectedExecutionException(
+                    "Too many checkouts waiting, cannot create order: " + request));
+        }
+        return checkout.result;
+    }
+
+    private void work() {
+        List<Checkout> batch = new ArrayList<>(maxBatchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                collect(batch);
+                place(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // Nobody may be left waiting, whatever went wrong
+                LOGGER.log(Level.SEVERE, "Error placing a batch of orders", e);
+                batch.forEach(checkout -> checkout.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<Checkout> batch) throws InterruptedException {
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0) {
+                return;
+            }
+            Checkout next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void place(List<Checkout> batch) {
+        batches.increment();
+        batchedOrders.add(batch.size());
+        if (batch.size() == 1) {
+            placeAlone(batch.get(0));
+            return;
+        }
+
+        List<Order> orders;
+        try {
+            orders = UnitOfWork.execute(() -> {
+                List<OrderRequest> requests = new ArrayList<>(batch.size());
+                batch.forEach(checkout -> requests.add(checkout.request));
+                batchLock.accept(requests);
+
+                List<Order> placed = new ArrayList<>(batch.size());
+                for (Checkout checkout : batch) {
+                    placed.add(placement.apply(checkout.request));
+                }
+                return placed;
+            });
+        } catch (RuntimeException e) {
+            batchFailures.increment();
+            LOGGER.log(Level.WARNING, "Batch of " + batch.size() + " orders rolled back, placing them one by one", e);
+            for (Checkout checkout : batch) {
+                placeAlone(new Checkout(checkout.request.retry(), checkout.result));
+            }
+            return;
+        }
+
+        // Only answered once the batch has committed
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(orders.get(i));
+        }
+    }
+
+    private void placeAlone(Checkout checkout) {
+        try {
+            checkout.result.complete(UnitOfWork.execute(() -> placement.apply(checkout.request)));
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error creating order: " + checkout.request, e);
+            checkout.result.completeExceptionally(e);
+        }
+    }
+
+    private static final class Checkout {
+        private final OrderRequest request;
+        private final CompletableFuture<Order> result;
+
+        private Checkout(OrderRequest request) {
+            this(request, new CompletableFuture<>());
+        }
+
+        private Checkout(OrderRequest request, CompletableFuture<Order> result) {
+            this.request = request;
+            this.result = result;
+        }
+    }
+}
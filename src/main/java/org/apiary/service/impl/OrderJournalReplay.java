@@ -0,0 +1,189 @@
+package org.apiary.service.impl;
+
+import org.apiary.journal.JournalEntry;
+import org.apiary.journal.OrderJournal;
+import org.apiary.metrics.Counter;
+import org.apiary.metrics.MetricsRegistry;
+import org.apiary.model.Order;
+import org.apiary.service.OrderQueuedException;
+import org.hibernate.PessimisticLockException;
+import org.hibernate.PropertyValueException;
+import org.hibernate.QueryTimeoutException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.DataException;
+import org.hibernate.exception.JDBCConnectionException;
+import org.hibernate.exception.LockAcquisitionException;
+
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drains the OrderJournal into the database. A checkout is recorded in the journal first
+ * and then placed; while the database cannot take it, placing is retried after an exponential
+ * backoff with full jitter, up to maxAttempts times. Once the order is placed (or the cart
+ * turned out to be empty) the checkout is marked done. A checkout that cannot be placed by
+ * retrying (see isPermanent), or that is still failing after maxAttempts, is moved to the
+ * journal's dead letters for an operator, so it does not hold its segment or come back on
+ * every start. The caller is not kept waiting for
+ * the retries: if the first attempt fails, or does not finish within answerTimeoutMillis,
+ * it is told that the checkout is queued. Checkouts left in the journal by an earlier run
+ * are replayed on start; the placement finds orders that were already placed by their
+ * request ID, so a checkout is never placed twice.
+ */
+final class OrderJournalReplay {
+
+    private static final Logger LOGGER = Logger.getLogger(OrderJournalReplay.class.getName());
+
+    private final OrderJournal journal;
+    private final Function<OrderRequest, CompletableFuture<Order>> placement;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final long answerTimeoutMillis;
+    private final int maxAttempts;
+
+    private final Counter retries;
+    private final Counter deadLettered;
+
+    /**
+     * @param journal The journal
+     * @param placement Places the order of a request; completes with the error if the order could not be written
+     * @param backoffMillis The backoff before the first retry, doubled for every further one
+     * @param maxBackoffMillis The longest backoff
+     * @param answerTimeoutMillis How long the caller waits for the first attempt
+     * @param maxAttempts The number of attempts after which a checkout is given up
+     */
+    OrderJournalReplay(OrderJournal journal, Function<OrderRequest, CompletableFuture<Order>> placement,
+                       long backoffMillis, long maxBackoffMillis, long answerTimeoutMillis, int maxAttempts) {
+        this.journal = journal;
+        this.placement = placement;
+        this.backoffMillis = Math.max(1, backoffMillis);
+        this.maxBackoffMillis = Math.max(this.backoffMillis, maxBackoffMillis);
+        this.answerTimeoutMillis = Math.max(0, answerTimeoutMillis);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        this.retries = registry.counter("orders.journal.retries");
+        this.deadLettered = registry.counter("orders.journal.deadLettered");
+    }
+
+    /**
+     * Replay the checkouts an earlier run left in the journal
+     */
+    void replayRecovered() {
+        for (JournalEntry entry : journal.getRecovered()) {
+            // Nobody is waiting for these any more
+            attempt(OrderRequest.replay(entry), 1, new CompletableFuture<>());
+        }
+    }
+
+    /**
+     * Record a checkout in the journal and place it
+     * @param request The checkout
+     * @return The placed order, or null if the cart could not be ordered. Fails with an
+     * OrderQueuedException if the first attempt failed or took too long, in which case the
+     * checkout is placed in the background, and with the error if it could not be recorded
+     * or cannot be placed by retrying.
+     */
+    CompletableFuture<Order> accept(OrderRequest request) {
+        CompletableFuture<Order> answer = new CompletableFuture<>();
+        journal.accept(request.getRequestId(), request.getClientId()).whenComplete((entry, error) -> {
+            if (error != null) {
+                answer.completeExceptionally(error);
+                return;
+            }
+            CompletableFuture.delayedExecutor(answerTimeoutMillis, TimeUnit.MILLISECONDS).execute(() ->
+                    answer.completeExceptionally(new OrderQueuedException(request.getRequestId(), null)));
+            attempt(request, 1, answer);
+        });
+        return answer;
+    }
+
+    /**
+     * @param outcome Completed with the order once it is placed, with the error if it is given
+     *                up, or with an OrderQueuedException when the first attempt fails and is
+     *                retried; once completed, later attempts leave it alone
+     */
+    private void attempt(OrderRequest request, int attempt, CompletableFuture<Order> outcome) {
+        CompletableFuture<Order> placed;
+        try {
+            placed = placement.apply(request);
+        } catch (RuntimeException e) {
+            placed = CompletableFuture.failedFuture(e);
+        }
+        placed.whenComplete((order, error) -> {
+            if (error == null) {
+                journal.done(request.getRequestId());
+                outcome.complete(order);
+                return;
+            }
+            if (isPermanent(error, attempt) || attempt >= maxAttempts) {
+                giveUp(request, attempt, error);
+                outcome.completeExceptionally(error);
+                return;
+            }
+            outcome.completeExceptionally(new OrderQueuedException(request.getRequestId(), error));
+            long delay = backoff(attempt);
+            retries.increment();
+            LOGGER.warning("Could not place journaled order " + request + " (attempt " + attempt + ": "
+                    + error.getMessage() + "), retrying in " + delay + " ms");
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                    .execute(() -> attempt(request.retry(), attempt + 1, outcome));
+        });
+    }
+
+    private void giveUp(OrderRequest request, int attempt, Throwable error) {
+        String reason = "attempt " + attempt + ": " + error;
+        if (journal.deadLetter(request.getRequestId(), request.getClientId(), reason)) {
+            deadLettered.increment();
+            LOGGER.log(Level.SEVERE, "Gave up placing journaled order " + request + " after attempt " + attempt
+                    + ", moved it to the dead letters of the order journal", error);
+        } else {
+            // Left in the journal, so it is tried again on the next start
+            LOGGER.log(Level.SEVERE, "Gave up placing journaled order " + request + " after attempt " + attempt
+                    + ", and could not move it to the dead letters", error);
+        }
+    }
+
+    /**
+     * Check if a failed attempt cannot succeed by retrying it: the order breaks a constraint or
+     * holds data the database refuses, or the placement failed on a programming error.
+     * Connection, lock and timeout errors, a full order intake and errors not recognised here
+     * are retried, up to maxAttempts.
+     * @param error The error of the attempt
+     * @param attempt The number of the attempt, from 1
+     * @return true if the checkout is to be given up
+     */
+    private static boolean isPermanent(Throwable error, int attempt) {
+        Throwable root = error;
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JDBCConnectionException || cause instanceof LockAcquisitionException
+                    || cause instanceof PessimisticLockException || cause instanceof QueryTimeoutException
+                    || cause instanceof SQLTransientException || cause instanceof SQLRecoverableException
+                    || cause instanceof RejectedExecutionException) {
+                return false;
+            }
+            if (cause instanceof ConstraintViolationException) {
+                // The first attempt may race an earlier one of the same checkout on the unique
+                // request ID; its retry looks the order up first and finds the one that won
+                return attempt > 1;
+            }
+            if (cause instanceof DataException || cause instanceof PropertyValueException) {
+                return true;
+            }
+            root = cause;
+        }
+        return root instanceof NullPointerException || root instanceof IllegalArgumentException
+                || root instanceof ClassCastException;
+    }
+
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
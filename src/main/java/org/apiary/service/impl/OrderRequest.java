@@ -0,0 +1,77 @@
+package org.apiary.service.impl;
+
+import org.apiary.journal.JournalEntry;
+import org.apiary.model.Client;
+
+import java.util.UUID;
+
+/**
+ * A checkout to place: the client whose cart is ordered and the request ID the order will
+ * carry. A request that may already have been placed, because an earlier attempt could have
+ * committed or because it was replayed from the OrderJournal, is checked for an existing order first.
+ */
+final class OrderRequest {
+
+    private final UUID requestId;
+    private final int clientId;
+    private final Client client;
+    private final boolean mayExist;
+
+    private OrderRequest(UUID requestId, int clientId, Client client, boolean mayExist) {
+        this.requestId = requestId;
+        this.clientId = clientId;
+        this.client = client;
+        this.mayExist = mayExist;
+    }
+
+    /**
+     * A new checkout of a client
+     * @param client The client
+     * @return The request, with a new request ID
+     */
+    static OrderRequest of(Client client) {
+        return new OrderRequest(UUID.randomUUID(), client.getUserId(), client, false);
+    }
+
+    /**
+     * A checkout read back from the order journal
+     * @param entry The journal entry
+     * @return The request; the client is loaded when it is placed
+     */
+    static OrderRequest replay(JournalEntry entry) {
+        return new OrderRequest(entry.getRequestId(), entry.getClientId(), null, true);
+    }
+
+    /**
+     * The same checkout, to be placed again after an attempt that may have committed
+     * @return The request
+     */
+    OrderRequest retry() {
+        return mayExist ? this : new OrderRequest(requestId, clientId, client, true);
+    }
+
+    UUID getRequestId() {
+        return requestId;
+    }
+
+    int getClientId() {
+        return clientId;
+    }
+
+    /**
+     * @return The client, or null if only its ID is known
+     */
+    Client getClient() {
+        return client;
+    }
+
+    boolean mayExist() {
+        return mayExist;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderRequest{requestId=" + requestId + ", client="
+                + (client != null ? client.getUsername() : clientId) + "}";
+    }
+}
@@ -1,81 +1,263 @@
 package org.apiary.service.impl;
 
+import org.apiary.config.AppConfig;
+import org.apiary.journal.OrderJournal;
 import org.apiary.model.*;
+import org.apiary.payment.PaymentOutcomeUnknownException;
+import org.apiary.repository.UnitOfWork;
+import org.apiary.repository.interfaces.CartItemRepository;
+import org.apiary.repository.interfaces.HoneyProductRepository;
 import org.apiary.repository.interfaces.OrderItemRepository;
 import org.apiary.repository.interfaces.OrderRepository;
-import org.apiary.service.interfaces.HoneyProductService;
+import org.apiary.repository.interfaces.UserRepository;
+import org.apiary.service.OrderQueuedException;
 import org.apiary.service.interfaces.OrderService;
 import org.apiary.service.interfaces.PaymentService;
-import org.apiary.service.interfaces.ShoppingCartService;
-
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 public class OrderServiceImpl implements OrderService {
 
     private static final Logger LOGGER = Logger.getLogger(OrderServiceImpl.class.getName());
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
-    private final ShoppingCartService shoppingCartService;
+    private final CartItemRepository cartItemRepository;
+    private final HoneyProductRepository honeyProductRepository;
+    private final UserRepository userRepository;
     private final PaymentService paymentService;
-    private final HoneyProductService honeyProductService;
+    private final ExecutorService fulfilmentExecutor;
+    private final OrderIntake orderIntake;
+    private final OrderJournalReplay journalReplay;
+    private final PaymentDeduplicator paymentDeduplicator;
 
     public OrderServiceImpl(OrderRepository orderRepository,
                             OrderItemRepository orderItemRepository,
-                            ShoppingCartService shoppingCartService,
-                            PaymentService paymentService,
-                            HoneyProductService honeyProductService) {
+                            CartItemRepository cartItemRepository,
+                            HoneyProductRepository honeyProductRepository,
+                            UserRepository userRepository,
+                            PaymentService paymentService) {
         this.orderRepository = orderRepository;
         this.orderItemRepository = orderItemRepository;
-        this.shoppingCartService = shoppingCartService;
+        this.cartItemRepository = cartItemRepository;
+        this.honeyProductRepository = honeyProductRepository;
+        this.userRepository = userRepository;
         this.paymentService = paymentService;
-        this.honeyProductService = honeyProductService;
+
+        AppConfig config = AppConfig.getInstance();
+
+        // One thread per pooled connection is as much database work as can run at once
+        AtomicInteger threads = new AtomicInteger();
+        this.fulfilmentExecutor = Executors.newFixedThreadPool(config.getPoolMaxSize(), task -> {
+            Thread thread = new Thread(task, "order-fulfilment-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Checkouts placed asynchronously are committed in batches, see OrderIntake
+        this.orderIntake = config.isOrderIntakeEnabled()
+                ? new OrderIntake(this::placeOrder, this::lockProducts,
+                config.getOrderIntakeWorkers(),
+                config.getOrderIntakeMaxBatchSize(),
+                config.getOrderIntakeMaxWaitMillis(),
+                config.getOrderIntakeMaxQueued())
+                : null;
+
+        // Repeated payment attempts are answered from memory, see PaymentDeduplicator
+        this.paymentDeduplicator = new PaymentDeduplicator(config.getPaymentIdempotencyTtlSeconds(),
+                config.getPaymentIdempotencyMaxEntries());
+
+        // Checkouts are recorded in a local journal before they are placed, so that none is
+        // lost while the database is unavailable, see OrderJournalReplay
+        this.journalReplay = config.isOrderJournalEnabled() ? openJournal(config) : null;
+        if (journalReplay != null) {
+            journalReplay.replayRecovered();
+        }
+    }
+
+    private OrderJournalReplay openJournal(AppConfig config) {
+        try {
+            OrderJournal journal = new OrderJournal(Paths.get(config.getOrderJournalDir()),
+                    config.getOrderJournalSegmentBytes());
+            return new OrderJournalReplay(journal, this::place,
+                    config.getOrderJournalRetryBackoffMillis(),
+                    config.getOrderJournalRetryMaxBackoffMillis(),
+                    config.getOrderJournalAnswerTimeoutMillis(),
+                    config.getOrderJournalMaxAttempts());
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Cannot open the order journal, orders are placed without it", e);
+            return null;
+        }
     }
 
     @Override
     public Order createOrderFromCart(Client client) {
+        OrderRequest request = OrderRequest.of(client);
         try {
-            // Get cart items
-            List<CartItem> cartItems = shoppingCartService.getCartItems(client);
-            if (cartItems.isEmpty()) {
-                LOGGER.warning("Cannot create order from empty cart for client: " + client.getUsername());
+            if (journalReplay != null) {
+                // Recorded in the journal before it is placed, so it is placed even if the
+                // database fails now
+                return journalReplay.accept(request).join();
+            }
+            return UnitOfWork.execute(() -> placeOrder(request));
+        } catch (Exception e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof OrderQueuedException) {
+                LOGGER.log(Level.WARNING, "Could not create order from cart for client: " + client.getUsername()
+                        + " right away, it is placed from the order journal", cause);
+                throw (OrderQueuedException) cause;
+            }
+            LOGGER.log(Level.SEVERE, "Error creating order from cart for client: " + client.getUsername(), cause);
+            return null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Order> createOrderFromCartAsync(Client client) {
+        OrderRequest request = OrderRequest.of(client);
+        CompletableFuture<Order> placed = journalReplay != null ? journalReplay.accept(request) : place(request);
+        // Hand the result over to the fulfilment threads, so what the caller chains on it
+        // does not hold up the intake workers
+        return placed.handleAsync((order, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof OrderQueuedException) {
+                    LOGGER.log(Level.WARNING, "Could not create order from cart for client: "
+                            + client.getUsername() + " right away, it is placed from the order journal", cause);
+                    throw (OrderQueuedException) cause;
+                }
+                LOGGER.log(Level.SEVERE, "Error creating order from cart for client: " + client.getUsername(), cause);
                 return null;
             }
+            return order;
+        }, fulfilmentExecutor);
+    }
+
+    /**
+     * Place the order of a request in a unit of work of its own, or in a batch of the order
+     * intake when it is enabled
+     * @param request The checkout
+     * @return The created order, null if the cart is empty or short of stock, or the error
+     * if the order could not be written
+     */
+    private CompletableFuture<Order> place(OrderRequest request) {
+        if (orderIntake != null) {
+            return orderIntake.submit(request);
+        }
+        return CompletableFuture.supplyAsync(() -> UnitOfWork.execute(() -> placeOrder(request)), fulfilmentExecutor);
+    }
+
+    /**
+     * Place the order of a request in the active unit of work: the products in the cart locked,
+     * cart items with their products in one join fetch, the stock of its products taken, the
+     * order and its items in batched inserts and one bulk delete of the cart items, so a failure
+     * at any step leaves no half-built order
+     * @param request The checkout
+     * @return The created order, or null if the cart is empty or short of stock
+     */
+    private Order placeOrder(OrderRequest request) {
+        Client client = request.getClient() != null ? request.getClient() : findClient(request.getClientId());
+        if (client == null) {
+            LOGGER.warning("Client not found, cannot create order: " + request);
+            return null;
+        }
 
-            // Create order
-            Order order = new Order(client);
-            Order savedOrder = orderRepository.save(order);
-
-            // Create order items from cart items
-            for (CartItem cartItem : cartItems) {
-                OrderItem orderItem = new OrderItem(
-                        savedOrder,
-                        cartItem.getProduct(),
-                        cartItem.getQuantity(),
-                        cartItem.getPrice());
-                orderItemRepository.save(orderItem);
-
-                // Add order item to order
-                savedOrder.addItem(orderItem);
+        // An earlier attempt at this checkout may have placed the order already
+        if (request.mayExist()) {
+            Optional<Order> placed = orderRepository.findByRequestId(request.getRequestId().toString());
+            if (placed.isPresent()) {
+                LOGGER.info("Order was already created: " + request);
+                return placed.get();
             }
+        }
 
-            // Calculate total
-            savedOrder.recalculateTotal();
-            savedOrder = orderRepository.save(savedOrder);
+        // Lock the products before the cart loads them, so a checkout that took the same products
+        // meanwhile is waited for rather than making them out of date in this session; in a
+        // batch of the order intake they are locked already, together with the other carts
+        honeyProductRepository.lockInCarts(List.of(client.getUserId()));
 
-            // Clear cart
-            shoppingCartService.clearCart(client);
+        // Get cart items
+        List<CartItem> cartItems = cartItemRepository.findByClient(client);
+        if (cartItems.isEmpty()) {
+            LOGGER.warning("Cannot create order from empty cart for client: " + client.getUsername());
+            return null;
+        }
 
-            LOGGER.info("Created order from cart for client: " + client.getUsername());
-            return savedOrder;
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error creating order from cart for client: " + client.getUsername(), e);
+        // Take the stock of all products at once, so that the order can be paid for without
+        // running short; canceling the order gives the stock back
+        Map<Integer, BigDecimal> quantitiesByProductId = new TreeMap<>();
+        for (CartItem cartItem : cartItems) {
+            quantitiesByProductId.merge(cartItem.getProduct().getProductId(),
+                    BigDecimal.valueOf(cartItem.getQuantity()), BigDecimal::add);
+        }
+        if (!honeyProductRepository.decrementQuantities(quantitiesByProductId)) {
+            LOGGER.warning("Not enough quantity available, cannot create order for client: " + client.getUsername());
+            return null;
+        }
+
+        // Create order with its items; the items are cascaded, so the order and
+        // all its items are inserted in batches when the unit of work flushes
+        Order order = new Order(client);
+        order.setRequestId(request.getRequestId().toString());
+        for (CartItem cartItem : cartItems) {
+            order.addItem(new OrderItem(
+                    order,
+                    cartItem.getProduct(),
+                    cartItem.getQuantity(),
+                    cartItem.getPrice()));
+        }
+
+        // Calculate total
+        order.recalculateTotal();
+        Order completedOrder = orderRepository.save(order);
+        if (completedOrder == null) {
+            UnitOfWork.markRollbackOnly();
             return null;
         }
+
+        // Clear cart with one bulk DELETE
+        cartItemRepository.deleteByClient(client);
+
+        LOGGER.info("Created order from cart for client: " + client.getUsername());
+        return completedOrder;
+    }
+
+    /**
+     * Lock the products in the carts of several checkouts at once, in ascending ID order, so
+     * their placements in one unit of work do not take the locks in an order of their own
+     * @param requests The checkouts
+     */
+    private void lockProducts(List<OrderRequest> requests) {
+        Set<Integer> clientIds = new HashSet<>();
+        for (OrderRequest request : requests) {
+            clientIds.add(request.getClientId());
+        }
+        honeyProductRepository.lockInCarts(clientIds);
+    }
+
+    private Client findClient(int clientId) {
+        Optional<User> user = userRepository.findById(clientId);
+        return user.isPresent() && user.get() instanceof Client ? (Client) user.get() : null;
     }
 
     @Override
@@ -98,6 +280,26 @@ public class OrderServiceImpl implements OrderService {
         }
     }
 
+    @Override
+    public KeysetPage<Order> findByClient(Client client, KeysetPageable pageable) {
+        try {
+            return orderRepository.findByClient(client, pageable);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding orders by client: " + client.getUsername(), e);
+            return new KeysetPage<>(List.of(), pageable.getSize(), null);
+        }
+    }
+
+    @Override
+    public Page<Order> findByClient(Client client, Pageable pageable) {
+        try {
+            return orderRepository.findByClient(client, pageable);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding orders by client: " + client.getUsername(), e);
+            return new Page<>(List.of(), pageable.getPage(), pageable.getSize(), 0);
+        }
+    }
+
     @Override
     public List<Order> findByStatus(String status) {
         try {
@@ -158,11 +360,39 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public boolean processPayment(Integer orderId) {
+        return processPayment(orderId, UUID.randomUUID().toString());
+    }
+
+    @Override
+    public boolean processPayment(Integer orderId, String idempotencyKey) {
+        try {
+            return processPaymentAsync(orderId, idempotencyKey).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PaymentOutcomeUnknownException) {
+                throw (PaymentOutcomeUnknownException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> processPaymentAsync(Integer orderId) {
+        // Without a key from the caller every call is an attempt of its own
+        return processPaymentAsync(orderId, UUID.randomUUID().toString());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> processPaymentAsync(Integer orderId, String idempotencyKey) {
+        // A repeated attempt neither reads the order nor calls the payment provider again
+        return paymentDeduplicator.execute(orderId, idempotencyKey, () -> payOrder(orderId, idempotencyKey));
+    }
+
+    private CompletableFuture<Boolean> payOrder(Integer orderId, String idempotencyKey) {
         try {
             Optional<Order> orderOpt = orderRepository.findById(orderId);
             if (orderOpt.isEmpty()) {
                 LOGGER.warning("Order not found: " + orderId);
-                return false;
+                return CompletableFuture.completedFuture(false);
             }
 
             Order order = orderOpt.get();
@@ -170,40 +400,88 @@ public class OrderServiceImpl implements OrderService {
             // Check if order is already paid
             if ("PAID".equals(order.getStatus())) {
                 LOGGER.warning("Order is already paid: " + orderId);
-                return true;
+                return CompletableFuture.completedFuture(true);
             }
 
             // Check if order is already canceled
             if ("CANCELED".equals(order.getStatus())) {
                 LOGGER.warning("Cannot process payment for canceled order: " + orderId);
-                return false;
+                return CompletableFuture.completedFuture(false);
             }
 
-            // Process payment
-            boolean paymentSuccess = paymentService.processPayment(order);
+            // Process payment; no thread waits for the provider, and the database work
+            // that follows runs on the fulfilment threads
+            return paymentService.processPaymentAsync(order, idempotencyKey)
+                    .thenApplyAsync(paymentSuccess -> fulfil(order, idempotencyKey, paymentSuccess), fulfilmentExecutor)
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        if (cause instanceof PaymentOutcomeUnknownException) {
+                            // Not a decline: the caller retries under the same key
+                            throw (PaymentOutcomeUnknownException) cause;
+                        }
+                        LOGGER.log(Level.SEVERE, "Error processing payment for order: " + orderId, e);
+                        return false;
+                    });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error processing payment for order: " + orderId, e);
+            return CompletableFuture.completedFuture(false);
+        }
+    }
 
-            if (paymentSuccess) {
-                // Update order status
+    /**
+     * Persist the outcome of a payment. The stock was taken when the order was placed,
+     * so a payment that went through only has to be recorded with the order.
+     * @param order The order that was paid for
+     * @param idempotencyKey The payment attempt
+     * @param paymentSuccess true if the payment went through
+     * @return true if the order is paid, false otherwise
+     */
+    private boolean fulfil(Order order, String idempotencyKey, boolean paymentSuccess) {
+        Integer orderId = order.getOrderId();
+        if (!paymentSuccess) {
+            // The order keeps its stock, so it can still be paid or canceled
+            LOGGER.warning("Payment failed for order: " + orderId);
+            return false;
+        }
+
+        try {
+            UnitOfWork.run(() -> {
                 order.setStatus("PAID");
                 orderRepository.save(order);
-
-                // Update product quantities
-                List<OrderItem> orderItems = orderItemRepository.findByOrder(order);
-                for (OrderItem item : orderItems) {
-                    honeyProductService.updateQuantityAfterPurchase(
-                            item.getProduct().getProductId(),
-                            item.getPrice().multiply(java.math.BigDecimal.valueOf(item.getQuantity())));
+            });
+        } catch (RuntimeException e) {
+            order.setStatus("PENDING");
+            // The payment of an attempt that got there first, possibly in another process,
+            // holds the same idempotency key or order and keeps this one from being stored
+            Optional<Payment> stored = findPayment(orderId);
+            if (stored.isPresent()) {
+                if (idempotencyKey.equals(stored.get().getIdempotencyKey())) {
+                    LOGGER.info("Order was paid by an earlier attempt: " + orderId);
+                } else {
+                    LOGGER.severe("Order " + orderId + " was paid by another attempt, the charge of attempt "
+                            + idempotencyKey + " must be refunded");
                 }
-
-                LOGGER.info("Payment processed successfully for order: " + orderId);
-            } else {
-                LOGGER.warning("Payment failed for order: " + orderId);
+                return true;
             }
+            // Charged but not recorded: retrying the same attempt gets the provider's answer to
+            // its reference again, so the payment is recorded without charging twice
+            LOGGER.log(Level.SEVERE, "Could not record payment for order: " + orderId, e);
+            throw new PaymentOutcomeUnknownException(idempotencyKey,
+                    "Payment of order " + orderId + " could not be recorded", e);
+        }
 
-            return paymentSuccess;
+        LOGGER.info("Payment processed successfully for order: " + orderId);
+        return true;
+    }
+
+    private Optional<Payment> findPayment(Integer orderId) {
+        try {
+            return orderRepository.findById(orderId)
+                    .filter(order -> "PAID".equals(order.getStatus()))
+                    .map(Order::getPayment);
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error processing payment for order: " + orderId, e);
-            return false;
+            LOGGER.log(Level.SEVERE, "Error checking payment of order: " + orderId, e);
+            return Optional.empty();
         }
     }
 
@@ -225,8 +503,12 @@ public class OrderServiceImpl implements OrderService {
                 return false;
             }
 
-            order.setStatus(status);
-            orderRepository.save(order);
+            if ("CANCELED".equals(status) && "PENDING".equals(order.getStatus())) {
+                cancel(order);
+            } else {
+                order.setStatus(status);
+                orderRepository.save(order);
+            }
 
             LOGGER.info("Updated status to " + status + " for order: " + orderId);
             return true;
@@ -248,7 +530,7 @@ public class OrderServiceImpl implements OrderService {
             Order order = orderOpt.get();
 
             // Check if order belongs to client
-            if (!order.getClient().equals(client)) {
+            if (!order.getClient().getUserId().equals(client.getUserId())) {
                 LOGGER.warning("Order does not belong to client: " +
                         orderId + ", " + client.getUsername());
                 return false;
@@ -261,8 +543,7 @@ public class OrderServiceImpl implements OrderService {
                 return false;
             }
 
-            order.setStatus("CANCELED");
-            orderRepository.save(order);
+            cancel(order);
 
             LOGGER.info("Canceled order: " + orderId);
             return true;
@@ -272,6 +553,29 @@ public class OrderServiceImpl implements OrderService {
         }
     }
 
+    /**
+     * Cancel a pending order and give back the stock it took when it was placed
+     * @param order The order
+     * @throws IllegalStateException if the order or the stock could not be written
+     */
+    private void cancel(Order order) {
+        UnitOfWork.run(() -> {
+            Map<Integer, BigDecimal> quantitiesByProductId = new TreeMap<>();
+            for (OrderItem item : orderItemRepository.findByOrder(order)) {
+                quantitiesByProductId.merge(item.getProduct().getProductId(),
+                        BigDecimal.valueOf(item.getQuantity()), BigDecimal::add);
+            }
+            if (!honeyProductRepository.incrementQuantities(quantitiesByProductId)) {
+                UnitOfWork.markRollbackOnly();
+                return;
+            }
+
+            // Versioned, so of two concurrent cancellations only one gives the stock back
+            order.setStatus("CANCELED");
+            orderRepository.save(order);
+        });
+    }
+
     /**
      * Check if a status transition is valid
      * @param currentStatus The current status
@@ -300,16 +604,7 @@ public class OrderServiceImpl implements OrderService {
     @Override
     public List<Order> findOrdersForBeekeeper(Beekeeper beekeeper) {
         try {
-            List<Order> allOrders = orderRepository.findAll();
-            return allOrders.stream()
-                    .filter(order -> {
-                        return order.getItems().stream()
-                                .anyMatch(item -> {
-                                    Apiary apiary = item.getProduct().getApiary();
-                                    return apiary.getBeekeeper().equals(beekeeper);
-                                });
-                    })
-                    .collect(Collectors.toList());
+            return orderRepository.findByBeekeeper(beekeeper, null, null, null);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding orders for beekeeper: " + beekeeper.getUsername(), e);
             return List.of();
@@ -319,25 +614,21 @@ public class OrderServiceImpl implements OrderService {
     @Override
     public List<Order> findOrdersWithFilters(Beekeeper beekeeper, String status, LocalDateTime startDate, LocalDateTime endDate) {
         try {
-            List<Order> beekeeperOrders = findOrdersForBeekeeper(beekeeper);
-
-            return beekeeperOrders.stream()
-                    .filter(order -> {
-                        if (status != null && !order.getStatus().equals(status)) {
-                            return false;
-                        }
-                        if (startDate != null && order.getDate().isBefore(startDate)) {
-                            return false;
-                        }
-                        if (endDate != null && order.getDate().isAfter(endDate)) {
-                            return false;
-                        }
-                        return true;
-                    })
-                    .collect(Collectors.toList());
+            return orderRepository.findByBeekeeper(beekeeper, status, startDate, endDate);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error finding orders with filters for beekeeper: " + beekeeper.getUsername(), e);
             return List.of();
         }
     }
+
+    @Override
+    public Page<Order> findOrdersWithFilters(Beekeeper beekeeper, String status, LocalDateTime startDate,
+                                             LocalDateTime endDate, Pageable pageable) {
+        try {
+            return orderRepository.findByBeekeeper(beekeeper, status, startDate, endDate, pageable);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding page of orders with filters for beekeeper: " + beekeeper.getUsername(), e);
+            return new Page<>(List.of(), pageable.getPage(), pageable.getSize(), 0);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package org.apiary.service.impl;
+
+import org.apiary.metrics.Counter;
+import org.apiary.metrics.MetricsRegistry;
+import org.apiary.payment.PaymentOutcomeUnknownException;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Answers repeated payment attempts from memory. The first attempt under an idempotency key
+ * runs; attempts with the same key arriving while it runs get its result, and so do those
+ * arriving within ttlSeconds after it succeeded. A declined attempt is forgotten as soon as it
+ * completes, so the order can be paid with a new attempt. An attempt whose outcome is unknown
+ * (see PaymentOutcomeUnknownException) is kept for ttlSeconds: the same key runs it again, so
+ * the provider is asked about the same reference, while a new key for the same order is
+ * refused with the key to retry instead of charging again. Across processes, and after an
+ * attempt has been forgotten, the unique idempotency key on Payment keeps a payment from being
+ * stored twice, and the unique order keeps an order from being paid by two attempts.
+ */
+final class PaymentDeduplicator {
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, Attempt> attempts = new ConcurrentHashMap<>();
+    // The key of the attempt with an unknown outcome, by order ID
+    private final Map<Integer, String> unknownByOrder = new ConcurrentHashMap<>();
+
+    private final Counter duplicates;
+    private final Counter unknown;
+
+    /**
+     * @param ttlSeconds How long a successful attempt, or one with an unknown outcome, is remembered
+     * @param maxEntries The number of attempts remembered, beyond which expired and then
+     *                   completed ones are forgotten early
+     */
+    PaymentDeduplicator(long ttlSeconds, int maxEntries) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, ttlSeconds));
+        this.maxEntries = Math.max(1, maxEntries);
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        this.duplicates = registry.counter("payment.duplicates");
+        this.unknown = registry.counter("payment.unknownOutcomes");
+        registry.gauge("payment.idempotencyKeys", attempts::size);
+    }
+
+    /**
+     * Run a payment attempt unless one with the same key is running or has succeeded
+     * @param orderId The order the attempt pays for
+     * @param idempotencyKey Identifies the attempt
+     * @param attempt Starts the attempt; completes with true if the payment succeeded
+     * @return The result of the attempt, or of the earlier one with the same key; fails with a
+     * PaymentOutcomeUnknownException carrying the earlier key if an earlier attempt of the
+     * order has an unknown outcome
+     */
+    CompletableFuture<Boolean> execute(Integer orderId, String idempotencyKey,
+                                       Supplier<CompletableFuture<Boolean>> attempt) {
+        long now = System.nanoTime();
+        String pendingKey = unknownByOrder.get(orderId);
+        if (pendingKey != null && !pendingKey.equals(idempotencyKey)) {
+            Attempt pending = attempts.get(pendingKey);
+            if (pending != null && pending.unknown && !pending.isExpired(now)) {
+                duplicates.increment();
+                return CompletableFuture.failedFuture(new PaymentOutcomeUnknownException(pendingKey,
+                        "Payment attempt " + pendingKey + " of order " + orderId
+                                + " has an unknown outcome, retry it instead", null));
+            }
+            unknownByOrder.remove(orderId, pendingKey);
+        }
+
+        Attempt[] created = new Attempt[1];
+        Attempt current = attempts.compute(idempotencyKey, (key, existing) -> {
+            // An unknown outcome is asked for again under the same key
+            if (existing != null && !existing.unknown && !existing.isExpired(now)) {
+                return existing;
+            }
+            created[0] = new Attempt();
+            return created[0];
+        });
+        if (created[0] == null) {
+            duplicates.increment();
+            return current.result;
+        }
+
+        if (attempts.size() > maxEntries) {
+            evict(now);
+        }
+
+        Attempt started = created[0];
+        CompletableFuture<Boolean> outcome;
+        try {
+            outcome = attempt.get();
+        } catch (RuntimeException e) {
+            outcome = CompletableFuture.failedFuture(e);
+        }
+        outcome.whenComplete((succeeded, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (cause instanceof PaymentOutcomeUnknownException) {
+                unknown.increment();
+                started.unknown = true;
+                started.expiresAt = System.nanoTime() + ttlNanos;
+                unknownByOrder.put(orderId, idempotencyKey);
+            } else {
+                unknownByOrder.remove(orderId, idempotencyKey);
+                if (error == null && Boolean.TRUE.equals(succeeded)) {
+                    started.expiresAt = System.nanoTime() + ttlNanos;
+                } else {
+                    attempts.remove(idempotencyKey, started);
+                }
+            }
+            if (error != null) {
+                started.result.completeExceptionally(cause);
+            } else {
+                started.result.complete(succeeded);
+            }
+        });
+        return started.result;
+    }
+
+    private void evict(long now) {
+        attempts.values().removeIf(entry -> entry.isExpired(now));
+        unknownByOrder.values().removeIf(key -> !attempts.containsKey(key));
+        // Still too many: forget completed attempts too, never running ones or unknown outcomes
+        Iterator<Attempt> iterator = attempts.values().iterator();
+        while (attempts.size() > maxEntries && iterator.hasNext()) {
+            Attempt entry = iterator.next();
+            if (entry.result.isDone() && !entry.unknown) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Attempt {
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        // Set once the attempt has succeeded or its outcome turned out unknown; a running
+        // attempt does not expire
+        private volatile long expiresAt;
+        private volatile boolean unknown;
+
+        private boolean isExpired(long now) {
+            return result.isDone() && now - expiresAt > 0;
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package org.apiary.service.impl;
 
+import org.apiary.config.AppConfig;
 import org.apiary.model.Order;
 import org.apiary.model.Payment;
 import org.apiary.model.PaymentSystem;
+import org.apiary.payment.PaymentGateway;
+import org.apiary.payment.PaymentGateways;
 import org.apiary.repository.interfaces.PaymentRepository;
 import org.apiary.service.interfaces.PaymentService;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,26 +25,39 @@ public class PaymentServiceImpl implements PaymentService {
     private final PaymentSystem paymentSystem;
 
     public PaymentServiceImpl(PaymentRepository paymentRepository) {
+        this(paymentRepository, PaymentGateways.create(AppConfig.getInstance()));
+    }
+
+    public PaymentServiceImpl(PaymentRepository paymentRepository, PaymentGateway paymentGateway) {
         this.paymentRepository = paymentRepository;
 
         // Initialize payment system (could be injected or configured elsewhere)
-        this.paymentSystem = new PaymentSystem("Stripe", "stripe_api_key");
+        this.paymentSystem = new PaymentSystem("Stripe", "stripe_api_key", paymentGateway);
     }
 
     @Override
     public boolean processPayment(Order order) {
-        try {
-            // Process payment using payment system
-            boolean paymentSuccessful = paymentSystem.processPayment(order);
+        return processPaymentAsync(order).join();
+    }
 
-            // Payment is created and stored inside the PaymentSystem.processPayment() method
+    @Override
+    public CompletableFuture<Boolean> processPaymentAsync(Order order) {
+        return processPaymentAsync(order, UUID.randomUUID().toString());
+    }
 
-            LOGGER.info("Processed payment for order: " + order.getOrderId() +
-                    " with result: " + paymentSuccessful);
-            return paymentSuccessful;
+    @Override
+    public CompletableFuture<Boolean> processPaymentAsync(Order order, String idempotencyKey) {
+        try {
+            // Process payment using payment system
+            // Payment is created and stored inside the PaymentSystem.processPaymentAsync() method
+            return paymentSystem.processPaymentAsync(order, idempotencyKey).thenApply(paymentSuccessful -> {
+                LOGGER.info("Processed payment for order: " + order.getOrderId() +
+                        " with result: " + paymentSuccessful);
+                return paymentSuccessful;
+            });
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error processing payment for order: " + order.getOrderId(), e);
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
     }
 
@@ -91,4 +111,16 @@ public class PaymentServiceImpl implements PaymentService {
             return List.of();
         }
     }
+
+    @Override
+    public KeysetPage<Payment> findByDateBetween(LocalDateTime startDate, LocalDateTime endDate,
+                                                 KeysetPageable pageable) {
+        try {
+            return paymentRepository.findByDateBetween(startDate, endDate, pageable);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error finding payments by date between: " +
+                    startDate + " and " + endDate, e);
+            return new KeysetPage<>(List.of(), pageable.getSize(), null);
+        }
+    }
 }
\ No newline at end of file
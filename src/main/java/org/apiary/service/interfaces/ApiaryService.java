@@ -4,6 +4,8 @@ import org.apiary.model.Apiary;
 import org.apiary.model.Beekeeper;
 import org.apiary.utils.events.EntityChangeEvent;
 import org.apiary.utils.observer.Observable;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
 
 import java.util.List;
 import java.util.Optional;
@@ -32,6 +34,14 @@ public interface ApiaryService extends Observable<EntityChangeEvent<?>> {
      */
     List<Apiary> findByBeekeeper(Beekeeper beekeeper);
 
+    /**
+     * Find a page of apiaries owned by a beekeeper, sorted by the database
+     * @param beekeeper The beekeeper
+     * @param pageable The pagination information ("name", "location" or "id" sort keys)
+     * @return A page of apiaries owned by the beekeeper
+     */
+    Page<Apiary> findByBeekeeper(Beekeeper beekeeper, Pageable pageable);
+
     /**
      * Find apiaries by name (partial match)
      * @param name The name to search for
@@ -6,7 +6,9 @@ import org.apiary.model.Hive;
 import org.apiary.utils.events.EntityChangeEvent;
 import org.apiary.utils.observer.Observable;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface HiveService extends Observable<EntityChangeEvent<?>> {
@@ -56,6 +58,13 @@ public interface HiveService extends Observable<EntityChangeEvent<?>> {
      */
     long countByApiary(Apiary apiary);
 
+    /**
+     * Count the number of hives of several apiaries at once
+     * @param apiaryIds The apiary IDs
+     * @return The number of hives by apiary ID
+     */
+    Map<Integer, Long> countByApiaries(Collection<Integer> apiaryIds);
+
     /**
      * Update a hive
      * @param hiveId The ID of the hive to update
@@ -6,11 +6,15 @@ import org.apiary.model.Hive;
 import org.apiary.model.HoneyProduct;
 import org.apiary.utils.events.EntityChangeEvent;
 import org.apiary.utils.observer.Observable;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
 import org.apiary.utils.pagination.Page;
 import org.apiary.utils.pagination.Pageable;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface HoneyProductService extends Observable<EntityChangeEvent<?>> {
@@ -128,6 +132,13 @@ public interface HoneyProductService extends Observable<EntityChangeEvent<?>> {
      */
     boolean updateQuantityAfterPurchase(Integer productId, BigDecimal quantityToSubtract);
 
+    /**
+     * Update the quantities of several honey products after a purchase, all or nothing
+     * @param quantitiesByProductId The quantity to subtract, by product ID
+     * @return true if all quantities were updated successfully, false otherwise
+     */
+    boolean updateQuantitiesAfterPurchase(Map<Integer, BigDecimal> quantitiesByProductId);
+
     /**
      * Count honey products by apiary
      * @param apiaryId The apiary ID
@@ -135,6 +146,13 @@ public interface HoneyProductService extends Observable<EntityChangeEvent<?>> {
      */
     long countProductsByApiary(Integer apiaryId);
 
+    /**
+     * Count honey products of several apiaries at once
+     * @param apiaryIds The apiary IDs
+     * @return The count of products by apiary ID
+     */
+    Map<Integer, Long> countProductsByApiaries(Collection<Integer> apiaryIds);
+
     /**
      * Count honey products by hive
      * @param hiveId The hive ID
@@ -177,4 +195,15 @@ public interface HoneyProductService extends Observable<EntityChangeEvent<?>> {
      */
     Page<HoneyProduct> findByNameContaining(String name, String category, BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable);
 
+    /**
+     * Find the next keyset page of honey products with filters; the cost of a page
+     * does not grow with its depth
+     * @param category The category filter
+     * @param minPrice The minimum price
+     * @param maxPrice The maximum price
+     * @param pageable The keyset pagination information
+     * @return A keyset page of honey products
+     */
+    KeysetPage<HoneyProduct> findByFilters(String category, BigDecimal minPrice, BigDecimal maxPrice, KeysetPageable pageable);
+
 }
\ No newline at end of file
@@ -4,19 +4,38 @@ import org.apiary.model.Beekeeper;
 import org.apiary.model.Client;
 import org.apiary.model.Order;
 import org.apiary.model.OrderItem;
+import org.apiary.payment.PaymentOutcomeUnknownException;
+import org.apiary.service.OrderQueuedException;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface OrderService {
     /**
      * Create a new order from a client's shopping cart
      * @param client The client
      * @return The created order, or null if creation failed
+     * @throws OrderQueuedException if the order could not be placed right away but is recorded
+     * in the order journal and will be placed later
      */
     Order createOrderFromCart(Client client);
 
+    /**
+     * Create a new order from a client's shopping cart without waiting for it; concurrent
+     * checkouts are committed together in batches when order.intake.enabled is set
+     * @param client The client
+     * @return The created order once it is committed, or null if creation failed; fails with
+     * an OrderQueuedException if the order could not be placed right away but is recorded in
+     * the order journal and will be placed later
+     */
+    CompletableFuture<Order> createOrderFromCartAsync(Client client);
+
     /**
      * Find an order by ID
      * @param orderId The ID of the order
@@ -31,6 +50,22 @@ public interface OrderService {
      */
     List<Order> findByClient(Client client);
 
+    /**
+     * Find the next keyset page of orders for a client, newest first
+     * @param client The client
+     * @param pageable The keyset pagination information
+     * @return A keyset page of orders for the client
+     */
+    KeysetPage<Order> findByClient(Client client, KeysetPageable pageable);
+
+    /**
+     * Find a page of orders for a client, sorted by the database
+     * @param client The client
+     * @param pageable The pagination information ("date", "total", "status" or "id" sort keys)
+     * @return A page of orders for the client
+     */
+    Page<Order> findByClient(Client client, Pageable pageable);
+
     /**
      * Find orders with a specific status
      * @param status The status to search for
@@ -68,12 +103,47 @@ public interface OrderService {
     List<OrderItem> getOrderItems(Integer orderId);
 
     /**
-     * Process payment for an order
+     * Process payment for an order. Every call is a new payment attempt; to retry an attempt
+     * whose outcome is unknown without charging twice, pass its idempotency key instead.
      * @param orderId The ID of the order
      * @return true if payment was processed successfully, false otherwise
+     * @throws PaymentOutcomeUnknownException if it is not known whether the order was charged
      */
     boolean processPayment(Integer orderId);
 
+    /**
+     * Process a payment attempt for an order. Attempts with the same idempotency key are
+     * charged and stored once; the others get the result of the first. Use a new key for a
+     * new attempt, e.g. with another card after a decline; an order is paid at most once.
+     * @param orderId The ID of the order
+     * @param idempotencyKey Identifies the attempt, at most 64 characters
+     * @return true if payment was processed successfully, false otherwise
+     * @throws PaymentOutcomeUnknownException if it is not known whether the order was charged;
+     * retry under the same key, a new key could charge again
+     */
+    boolean processPayment(Integer orderId, String idempotencyKey);
+
+    /**
+     * Process payment for an order without blocking the caller while the payment provider
+     * answers; the order status is updated once it has. Every call is a new payment attempt.
+     * @param orderId The ID of the order
+     * @return Completes with true if payment was processed successfully, false otherwise, or
+     * exceptionally with a PaymentOutcomeUnknownException if it is not known whether the order was charged
+     */
+    CompletableFuture<Boolean> processPaymentAsync(Integer orderId);
+
+    /**
+     * Process a payment attempt for an order without blocking the caller while the payment
+     * provider answers. Attempts with the same idempotency key are charged and stored once;
+     * the others get the result of the first. Use a new key for a new attempt.
+     * @param orderId The ID of the order
+     * @param idempotencyKey Identifies the attempt, at most 64 characters
+     * @return Completes with true if payment was processed successfully, false if it was declined,
+     * or exceptionally with a PaymentOutcomeUnknownException if it is not known whether the order
+     * was charged; retry under the same key, a new key could charge again
+     */
+    CompletableFuture<Boolean> processPaymentAsync(Integer orderId, String idempotencyKey);
+
     /**
      * Update the status of an order
      * @param orderId The ID of the order
@@ -83,7 +153,7 @@ public interface OrderService {
     boolean updateOrderStatus(Integer orderId, String status);
 
     /**
-     * Cancel an order
+     * Cancel a pending order, giving back the stock it took when it was placed
      * @param orderId The ID of the order
      * @param client The client
      * @return true if the order was canceled successfully, false otherwise
@@ -106,4 +176,16 @@ public interface OrderService {
      * @return A list of filtered orders
      */
     List<Order> findOrdersWithFilters(Beekeeper beekeeper, String status, LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Find a page of orders with filters; filtering, sorting and paging are done by the database
+     * @param beekeeper The beekeeper
+     * @param status The status filter
+     * @param startDate The start date filter
+     * @param endDate The end date filter
+     * @param pageable The pagination information ("date", "total", "status" or "id" sort keys)
+     * @return A page of filtered orders
+     */
+    Page<Order> findOrdersWithFilters(Beekeeper beekeeper, String status, LocalDateTime startDate,
+                                      LocalDateTime endDate, Pageable pageable);
 }
\ No newline at end of file
@@ -2,9 +2,12 @@ package org.apiary.service.interfaces;
 
 import org.apiary.model.Order;
 import org.apiary.model.Payment;
+import org.apiary.utils.pagination.KeysetPage;
+import org.apiary.utils.pagination.KeysetPageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface PaymentService {
     /**
@@ -14,6 +17,24 @@ public interface PaymentService {
      */
     boolean processPayment(Order order);
 
+    /**
+     * Process payment for an order without waiting for the payment provider
+     * @param order The order to process payment for
+     * @return Completes with true if payment was processed successfully, false if it was declined,
+     * or exceptionally with a PaymentOutcomeUnknownException if the provider did not answer
+     */
+    CompletableFuture<Boolean> processPaymentAsync(Order order);
+
+    /**
+     * Process a payment attempt for an order without waiting for the payment provider
+     * @param order The order to process payment for
+     * @param idempotencyKey Identifies the attempt to the payment provider and on the payment record
+     * @return Completes with true if payment was processed successfully, false if it was declined,
+     * or exceptionally with a PaymentOutcomeUnknownException if the provider did not answer, in
+     * which case the attempt is to be retried under the same key
+     */
+    CompletableFuture<Boolean> processPaymentAsync(Order order, String idempotencyKey);
+
     /**
      * Find the payment for an order
      * @param order The order
@@ -49,4 +70,13 @@ public interface PaymentService {
      * @return A list of payments made between the specified dates
      */
     List<Payment> findByDateBetween(LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Find the next keyset page of payments made between two dates, newest first
+     * @param startDate The start date
+     * @param endDate The end date
+     * @param pageable The keyset pagination information
+     * @return A keyset page of payments made between the specified dates
+     */
+    KeysetPage<Payment> findByDateBetween(LocalDateTime startDate, LocalDateTime endDate, KeysetPageable pageable);
 }
\ No newline at end of file
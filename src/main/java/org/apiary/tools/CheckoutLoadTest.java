@@ -0,0 +1,342 @@
+package org.apiary.tools;
+
+import com.mchange.v2.c3p0.C3P0Registry;
+import com.mchange.v2.c3p0.PooledDataSource;
+import org.apiary.config.AppConfig;
+import org.apiary.config.HibernateConfig;
+import org.apiary.metrics.LatencyHistogram;
+import org.apiary.model.Client;
+import org.apiary.model.HoneyProduct;
+import org.apiary.model.Order;
+import org.apiary.model.OrderItem;
+import org.apiary.payment.PaymentOutcomeUnknownException;
+import org.apiary.service.ServiceFactory;
+import org.apiary.service.interfaces.HoneyProductService;
+import org.apiary.service.interfaces.OrderService;
+import org.apiary.service.interfaces.ShoppingCartService;
+import org.apiary.utils.pagination.Page;
+import org.apiary.utils.pagination.Pageable;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless checkout load test. Runs loadtest.clients concurrent clients, each repeating
+ * browse, addToCart, createOrderFromCart and processPayment through ServiceFactory, and
+ * reports:
+ * <ul>
+ *   <li>checkout throughput and latency percentiles per step</li>
+ *   <li>failed orders and payments, and unexpected errors</li>
+ *   <li>oversold products: negative stock, or stock that does not match what was sold</li>
+ *   <li>connection pool saturation: busy connections and threads waiting for one</li>
+ * </ul>
+ * Runs in the benchmark profile by default (seeded in-memory database, payment provider
+ * stubbed with payment.delayMillis). With loadtest.orderIntake=true (the default) orders are
+ * placed with createOrderFromCartAsync, so concurrent checkouts are committed in batches;
+ * false places each with createOrderFromCart in its own transaction. Settings are given as key=value arguments, e.g.
+ * {@code CheckoutLoadTest loadtest.clients=64 loadtest.durationSeconds=60}.
+ */
+public final class CheckoutLoadTest {
+
+    private static final Logger LOGGER = Logger.getLogger(CheckoutLoadTest.class.getName());
+    private static final String[] CATEGORIES = {"Floral", "Forest", "Acacia", "Linden", "Polyfloral", "Organic"};
+    private static final int PAGE_SIZE = 20;
+    private static final long POOL_SAMPLE_MILLIS = 100;
+    private static final int MAX_PAYMENT_ATTEMPTS = 3;
+
+    private final int clientCount;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int thinkMillis;
+    private final boolean orderIntake;
+
+    private final HoneyProductService honeyProductService = ServiceFactory.getHoneyProductService();
+    private final ShoppingCartService shoppingCartService = ServiceFactory.getShoppingCartService();
+    private final OrderService orderService = ServiceFactory.getOrderService();
+
+    private final LatencyHistogram browseLatency = new LatencyHistogram();
+    private final LatencyHistogram addToCartLatency = new LatencyHistogram();
+    private final LatencyHistogram createOrderLatency = new LatencyHistogram();
+    private final LatencyHistogram paymentLatency = new LatencyHistogram();
+    private final LatencyHistogram checkoutLatency = new LatencyHistogram();
+
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder failedOrders = new LongAdder();
+    private final LongAdder failedPayments = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Map<Integer, LongAdder> soldByProduct = new ConcurrentHashMap<>();
+
+    private final LongAccumulator maxBusyConnections = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxWaitingThreads = new LongAccumulator(Math::max, 0);
+    private final LongAdder saturatedSamples = new LongAdder();
+    private final LongAdder poolSamples = new LongAdder();
+    private final int poolSize;
+
+    // Start of the measured period; steps before it are warm-up and not recorded
+    private volatile long measureFrom = Long.MAX_VALUE;
+
+    public CheckoutLoadTest(AppConfig config) {
+        this.clientCount = config.getInt("loadtest.clients", 16);
+        this.warmupSeconds = config.getInt("loadtest.warmupSeconds", 10);
+        this.durationSeconds = config.getInt("loadtest.durationSeconds", 30);
+        this.thinkMillis = config.getInt("loadtest.thinkMillis", 0);
+        this.orderIntake = config.getBoolean("loadtest.orderIntake", true);
+        this.poolSize = config.getPoolMaxSize();
+    }
+
+    /**
+     * Run the load test against the configured database and print the report
+     * @param args Settings as key=value, overriding the configuration
+     */
+    public static void main(String[] args) {
+        ToolSettings.apply(args, "benchmark");
+        try {
+            HibernateConfig.getSessionFactory();
+            DataGenerator.seedIfEnabled();
+            new CheckoutLoadTest(AppConfig.getInstance()).run();
+        } finally {
+            HibernateConfig.shutdown();
+        }
+    }
+
+    /**
+     * Run the load test and print the report
+     */
+    public void run() {
+        List<Client> clients = loadClients();
+        Map<Integer, BigDecimal> initialStock = stockByProduct();
+
+        ExecutorService workers = Executors.newFixedThreadPool(clients.size());
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(this::samplePool, 0, POOL_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+
+        measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        System.out.println("Running " + clients.size() + " clients: " + warmupSeconds + "s warm-up, "
+                + durationSeconds + "s measured, orders " + (orderIntake ? "committed in batches" : "committed one by one"));
+        for (Client client : clients) {
+            workers.execute(() -> {
+                while (System.nanoTime() < end) {
+                    checkout(client);
+                }
+            });
+        }
+
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(warmupSeconds + durationSeconds + 60L, TimeUnit.SECONDS)) {
+                LOGGER.warning("Clients did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sampler.shutdownNow();
+        }
+
+        report(initialStock, stockByProduct());
+    }
+
+    private List<Client> loadClients() {
+        List<Client> clients = new ArrayList<>(clientCount);
+        for (int i = 0; i < clientCount; i++) {
+            String username = DataGenerator.clientName(i);
+            clients.add(ServiceFactory.getUserService().findClientByUsername(username)
+                    .orElseThrow(() -> new IllegalStateException("Missing client " + username
+                            + ", generate at least loadtest.clients clients (db.seed.clients)")));
+        }
+        return clients;
+    }
+
+    private void checkout(Client client) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long checkoutStart = System.nanoTime();
+        try {
+            // Browse a catalog page
+            Pageable pageable = new Pageable(random.nextInt(3), PAGE_SIZE, "price", "asc");
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            Page<HoneyProduct> page = timed(browseLatency,
+                    () -> honeyProductService.findByFilters(category, null, null, pageable));
+            if (page.getContent().isEmpty()) {
+                return;
+            }
+
+            // Put a few of its products in the cart
+            int lines = 1 + random.nextInt(3);
+            for (int i = 0; i < lines; i++) {
+                HoneyProduct product = page.getContent().get(random.nextInt(page.getContent().size()));
+                int quantity = 1 + random.nextInt(2);
+                timed(addToCartLatency, () -> shoppingCartService.addToCart(client, product, quantity));
+            }
+
+            Order order = timed(createOrderLatency, () -> orderIntake
+                    ? orderService.createOrderFromCartAsync(client).join()
+                    : orderService.createOrderFromCart(client));
+            if (order == null) {
+                count(failedOrders);
+                shoppingCartService.clearCart(client);
+                return;
+            }
+
+            boolean paid = timed(paymentLatency, () -> pay(order));
+            if (!paid) {
+                // Give the stock the order took back, so it still matches what was sold
+                count(failedPayments);
+                orderService.cancelOrder(order.getOrderId(), client);
+                return;
+            }
+
+            for (OrderItem item : order.getItems()) {
+                soldByProduct.computeIfAbsent(item.getProduct().getProductId(), id -> new LongAdder())
+                        .add(item.getQuantity());
+            }
+            if (isRecording()) {
+                checkouts.increment();
+                checkoutLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - checkoutStart));
+            }
+        } catch (Exception e) {
+            count(errors);
+            LOGGER.log(Level.WARNING, "Checkout failed for client: " + client.getUsername(), e);
+        } finally {
+            think();
+        }
+    }
+
+    /**
+     * Pay for an order with one attempt, retried under its key while its outcome is unknown,
+     * as the checkout window does
+     * @param order The order
+     * @return true if the order is paid, false if the payment was declined or stayed unknown
+     */
+    private boolean pay(Order order) {
+        String attemptKey = UUID.randomUUID().toString();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return orderService.processPayment(order.getOrderId(), attemptKey);
+            } catch (PaymentOutcomeUnknownException e) {
+                if (attempt >= MAX_PAYMENT_ATTEMPTS) {
+                    LOGGER.log(Level.WARNING, "Payment outcome still unknown for order: " + order.getOrderId(), e);
+                    return false;
+                }
+            }
+        }
+    }
+
+    private <R> R timed(LatencyHistogram histogram, Supplier<R> step) {
+        long stepStart = System.nanoTime();
+        R result = step.get();
+        if (isRecording()) {
+            histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - stepStart));
+        }
+        return result;
+    }
+
+    private void count(LongAdder counter) {
+        if (isRecording()) {
+            counter.increment();
+        }
+    }
+
+    private boolean isRecording() {
+        return System.nanoTime() >= measureFrom;
+    }
+
+    private void think() {
+        if (thinkMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(thinkMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void samplePool() {
+        try {
+            int busy = 0;
+            int waiting = 0;
+            for (Object source : C3P0Registry.getPooledDataSources()) {
+                PooledDataSource pool = (PooledDataSource) source;
+                busy += pool.getNumBusyConnectionsAllUsers();
+                waiting += pool.getNumThreadsAwaitingCheckoutDefaultUser();
+            }
+            if (!isRecording()) {
+                return;
+            }
+            maxBusyConnections.accumulate(busy);
+            maxWaitingThreads.accumulate(waiting);
+            poolSamples.increment();
+            if (busy >= poolSize) {
+                saturatedSamples.increment();
+            }
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not sample the connection pool", e);
+        }
+    }
+
+    private Map<Integer, BigDecimal> stockByProduct() {
+        Map<Integer, BigDecimal> stock = new HashMap<>();
+        for (HoneyProduct product : honeyProductService.findAll()) {
+            stock.put(product.getProductId(), product.getQuantity());
+        }
+        return stock;
+    }
+
+    private void report(Map<Integer, BigDecimal> initialStock, Map<Integer, BigDecimal> finalStock) {
+        int negativeStock = 0;
+        int stockMismatches = 0;
+        for (Map.Entry<Integer, BigDecimal> entry : finalStock.entrySet()) {
+            BigDecimal initial = initialStock.getOrDefault(entry.getKey(), BigDecimal.ZERO);
+            LongAdder sold = soldByProduct.get(entry.getKey());
+            BigDecimal expected = initial.subtract(BigDecimal.valueOf(sold == null ? 0 : sold.sum()));
+            if (entry.getValue().signum() < 0) {
+                negativeStock++;
+            }
+            if (entry.getValue().compareTo(expected) != 0) {
+                stockMismatches++;
+            }
+        }
+
+        System.out.println();
+        System.out.printf("Checkouts: %d in %ds = %.1f/s with %d clients%n", checkouts.sum(), durationSeconds,
+                (double) checkouts.sum() / durationSeconds, clientCount);
+        System.out.printf("Failed orders: %d, failed payments: %d, errors: %d%n",
+                failedOrders.sum(), failedPayments.sum(), errors.sum());
+        System.out.printf("Oversold products: %d with negative stock, %d with stock not matching sales%n",
+                negativeStock, stockMismatches);
+        System.out.printf("Connection pool: max %d of %d busy, max %d threads waiting, saturated in %.0f%% of samples%n",
+                maxBusyConnections.get(), poolSize, maxWaitingThreads.get(),
+                poolSamples.sum() == 0 ? 0.0 : 100.0 * saturatedSamples.sum() / poolSamples.sum());
+        System.out.println();
+        System.out.printf("%-20s %8s %9s %9s %9s %9s %9s %9s%n",
+                "Latency (ms)", "count", "mean", "p50", "p90", "p99", "p99.9", "max");
+        printLatency("browse", browseLatency);
+        printLatency("addToCart", addToCartLatency);
+        printLatency("createOrderFromCart", createOrderLatency);
+        printLatency("processPayment", paymentLatency);
+        printLatency("checkout", checkoutLatency);
+    }
+
+    private static void printLatency(String name, LatencyHistogram histogram) {
+        System.out.printf("%-20s %8d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getCount(),
+                histogram.getMean() / 1000, histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0);
+    }
+}
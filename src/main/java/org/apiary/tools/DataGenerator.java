@@ -0,0 +1,283 @@
+package org.apiary.tools;
+
+import org.apiary.config.AppConfig;
+import org.apiary.config.HibernateConfig;
+import org.apiary.model.*;
+import org.apiary.repository.RepositoryFactory;
+import org.apiary.repository.UnitOfWork;
+import org.apiary.repository.interfaces.ApiaryRepository;
+import org.apiary.repository.interfaces.HiveRepository;
+import org.apiary.repository.interfaces.HoneyProductRepository;
+import org.apiary.repository.interfaces.OrderRepository;
+import org.apiary.repository.interfaces.UserRepository;
+import org.apiary.utils.PasswordUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Generates a synthetic data set: beekeepers with their apiaries, hives and products,
+ * clients with carts, and a multi-year order history with items and payments.
+ * <p>
+ * Volumes come from the db.seed.* settings (see AppConfig). Demand is skewed the way real
+ * shops are: product popularity and client activity follow Zipf distributions, so a few
+ * products and clients account for most of the order lines. Rows are written through the
+ * repositories in transactions of db.seed.batchSize orders, so memory stays flat at
+ * millions of order lines. The same db.seed.random value always produces the same data.
+ * <p>
+ * Run as a tool with settings as arguments, e.g.
+ * {@code DataGenerator app.profile=benchmark db.seed.clients=100000 db.seed.ordersPerClient=20},
+ * or at startup through {@link #seedIfEnabled()}. Generated users log in with SEED_PASSWORD.
+ */
+public final class DataGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(DataGenerator.class.getName());
+    public static final String SEED_PASSWORD = "Seed#Pass1";
+
+    private static final String[] HONEY_TYPES = {"Floral", "Forest", "Acacia", "Linden", "Polyfloral", "Organic"};
+    private static final String[] LOCATIONS = {"Cluj", "Brasov", "Sibiu", "Iasi", "Timisoara", "Oradea", "Suceava"};
+    private static final int RECENT_DAYS = 30;
+    private static final int PROGRESS_INTERVAL = 100_000;
+
+    private final AppConfig config;
+    private final Random random;
+    private final String passwordHash;
+
+    private final UserRepository userRepository = RepositoryFactory.getUserRepository();
+    private final ApiaryRepository apiaryRepository = RepositoryFactory.getApiaryRepository();
+    private final HiveRepository hiveRepository = RepositoryFactory.getHiveRepository();
+    private final HoneyProductRepository honeyProductRepository = RepositoryFactory.getHoneyProductRepository();
+    private final OrderRepository orderRepository = RepositoryFactory.getOrderRepository();
+
+    public DataGenerator(AppConfig config) {
+        this.config = config;
+        this.random = new Random(config.getSeedRandom());
+        // Hashing is deliberately slow, so all generated users share one hash
+        this.passwordHash = PasswordUtils.hashPassword(SEED_PASSWORD);
+    }
+
+    /**
+     * Generate data into the configured database, then shut it down
+     * @param args Settings as key=value, overriding the configuration
+     */
+    public static void main(String[] args) {
+        ToolSettings.apply(args, null);
+        try {
+            HibernateConfig.getSessionFactory();
+            new DataGenerator(AppConfig.getInstance()).generate();
+        } finally {
+            HibernateConfig.shutdown();
+        }
+    }
+
+    /**
+     * Generate data if db.seed.enabled is set and the database was not seeded before
+     */
+    public static void seedIfEnabled() {
+        AppConfig config = AppConfig.getInstance();
+        if (!config.isSeedEnabled()) {
+            return;
+        }
+        if (RepositoryFactory.getUserRepository().usernameExists(beekeeperName(0))) {
+            LOGGER.info("Database already seeded, skipping");
+            return;
+        }
+        new DataGenerator(config).generate();
+    }
+
+    /**
+     * Generate the whole data set
+     */
+    public void generate() {
+        long start = System.currentTimeMillis();
+        List<HoneyProduct> products = generateCatalog();
+        List<Client> clients = generateClients(products);
+        long orders = generateOrders(clients, products);
+        LOGGER.info("Generated " + products.size() + " products, " + clients.size() + " clients and "
+                + orders + " orders in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private List<HoneyProduct> generateCatalog() {
+        int beekeepers = config.getSeedBeekeepers();
+        int apiariesPerBeekeeper = config.getSeedApiariesPerBeekeeper();
+        int hivesPerApiary = config.getSeedHivesPerApiary();
+        int productsPerApiary = config.getSeedProductsPerApiary();
+
+        // One transaction per beekeeper keeps the sessions small at any volume
+        List<HoneyProduct> products = new ArrayList<>(beekeepers * apiariesPerBeekeeper * productsPerApiary);
+        for (int b = 0; b < beekeepers; b++) {
+            int index = b;
+            UnitOfWork.run(() -> {
+                Beekeeper beekeeper = (Beekeeper) userRepository.save(
+                        new Beekeeper(beekeeperName(index), passwordHash, phone(), "Str. Albinelor " + index));
+                for (int a = 0; a < apiariesPerBeekeeper; a++) {
+                    Apiary apiary = apiaryRepository.save(new Apiary("Apiary " + index + "-" + a,
+                            LOCATIONS[random.nextInt(LOCATIONS.length)], beekeeper));
+
+                    Hive[] hives = new Hive[hivesPerApiary];
+                    for (int h = 0; h < hivesPerApiary; h++) {
+                        hives[h] = hiveRepository.save(new Hive(h + 1, 2015 + random.nextInt(10), apiary));
+                    }
+
+                    for (int p = 0; p < productsPerApiary; p++) {
+                        String type = HONEY_TYPES[random.nextInt(HONEY_TYPES.length)];
+                        HoneyProduct product = new HoneyProduct(type + " honey " + index + "-" + a + "-" + p,
+                                type + " honey from " + apiary.getLocation(), price(),
+                                BigDecimal.valueOf(10 + random.nextInt(491)), apiary);
+                        if (hivesPerApiary > 0 && random.nextBoolean()) {
+                            product.setHive(hives[random.nextInt(hivesPerApiary)]);
+                        }
+                        products.add(honeyProductRepository.save(product));
+                    }
+                }
+            });
+        }
+        LOGGER.info("Generated " + beekeepers + " beekeepers, " + beekeepers * apiariesPerBeekeeper + " apiaries, "
+                + beekeepers * apiariesPerBeekeeper * hivesPerApiary + " hives and " + products.size() + " products");
+        return products;
+    }
+
+    private List<Client> generateClients(List<HoneyProduct> products) {
+        int count = config.getSeedClients();
+        int batchSize = config.getSeedBatchSize();
+        int cartPercent = config.getSeedCartPercent();
+
+        List<Client> clients = new ArrayList<>(count);
+        for (int from = 0; from < count; from += batchSize) {
+            int to = Math.min(count, from + batchSize);
+            int first = from;
+            UnitOfWork.run(() -> {
+                for (int c = first; c < to; c++) {
+                    Client client = new Client(clientName(c), passwordHash, "Client " + c,
+                            clientName(c) + "@example.com", "Str. Florilor " + c, phone());
+                    // The cart and its items are saved with the client
+                    if (!products.isEmpty() && random.nextInt(100) < cartPercent) {
+                        int items = 1 + random.nextInt(4);
+                        for (int i = 0; i < items; i++) {
+                            client.getShoppingCart().addItem(products.get(random.nextInt(products.size())),
+                                    1 + random.nextInt(3));
+                        }
+                    }
+                    clients.add((Client) userRepository.save(client));
+                }
+            });
+        }
+        LOGGER.info("Generated " + clients.size() + " clients");
+        return clients;
+    }
+
+    private long generateOrders(List<Client> clients, List<HoneyProduct> products) {
+        if (clients.isEmpty() || products.isEmpty()) {
+            return 0;
+        }
+        long total = (long) clients.size() * config.getSeedOrdersPerClient();
+        int batchSize = config.getSeedBatchSize();
+        int maxItems = Math.max(1, config.getSeedMaxItemsPerOrder());
+        long historyMinutes = config.getSeedHistoryYears() * 365L * 24 * 60;
+        LocalDateTime now = LocalDateTime.now();
+
+        // Popularity is by rank; shuffle so the best sellers are spread over beekeepers
+        List<HoneyProduct> productsByRank = new ArrayList<>(products);
+        Collections.shuffle(productsByRank, random);
+        List<Client> clientsByRank = new ArrayList<>(clients);
+        Collections.shuffle(clientsByRank, random);
+        ZipfSampler productSampler = new ZipfSampler(productsByRank.size(), config.getSeedProductSkew());
+        ZipfSampler clientSampler = new ZipfSampler(clientsByRank.size(), config.getSeedClientSkew());
+
+        long generated = 0;
+        while (generated < total) {
+            int chunk = (int) Math.min(batchSize, total - generated);
+            UnitOfWork.run(() -> {
+                for (int i = 0; i < chunk; i++) {
+                    Order order = new Order(clientsByRank.get(clientSampler.next(random)));
+                    order.setDate(now.minusMinutes((long) (random.nextDouble() * historyMinutes)));
+
+                    // Small baskets are the most common
+                    int items = Math.min(maxItems, 1 + (int) (-Math.log(1 - random.nextDouble()) * 1.5));
+                    for (int line = 0; line < items; line++) {
+                        HoneyProduct product = productsByRank.get(productSampler.next(random));
+                        order.addItem(new OrderItem(order, product, 1 + random.nextInt(3), product.getPrice()));
+                    }
+
+                    order.setStatus(status(order.getDate().isBefore(now.minusDays(RECENT_DAYS))));
+                    if ("PAID".equals(order.getStatus()) || "DELIVERED".equals(order.getStatus())) {
+                        Payment payment = new Payment(order, order.getTotal(), "SUCCESS");
+                        payment.setDate(order.getDate().plusMinutes(1 + random.nextInt(60)));
+                        order.setPayment(payment);
+                    }
+                    orderRepository.save(order);
+                }
+            });
+
+            long before = generated;
+            generated += chunk;
+            if (before / PROGRESS_INTERVAL != generated / PROGRESS_INTERVAL) {
+                LOGGER.info("Generated " + generated + " of " + total + " orders");
+            }
+        }
+        return generated;
+    }
+
+    private String status(boolean old) {
+        int roll = random.nextInt(100);
+        if (old) {
+            return roll < 90 ? "DELIVERED" : roll < 97 ? "CANCELED" : "PAID";
+        }
+        return roll < 40 ? "PENDING" : roll < 80 ? "PAID" : roll < 95 ? "DELIVERED" : "CANCELED";
+    }
+
+    private BigDecimal price() {
+        return BigDecimal.valueOf(15 + random.nextDouble() * 85).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private String phone() {
+        return String.format("07%08d", random.nextInt(100_000_000));
+    }
+
+    /**
+     * Get the username of a generated beekeeper
+     * @param index The index of the beekeeper, from 0
+     * @return The username
+     */
+    public static String beekeeperName(int index) {
+        return String.format("beekeeper%05d", index);
+    }
+
+    /**
+     * Get the username of a generated client
+     * @param index The index of the client, from 0
+     * @return The username
+     */
+    public static String clientName(int index) {
+        return String.format("client%07d", index);
+    }
+
+    /**
+     * Draws ranks 0..n-1 where rank k has weight 1/(k+1)^skew
+     */
+    private static final class ZipfSampler {
+        private final double[] cumulative;
+
+        ZipfSampler(int n, double skew) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1 / Math.pow(k + 1, skew);
+                cumulative[k] = sum;
+            }
+        }
+
+        int next(Random random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int index = Arrays.binarySearch(cumulative, target);
+            return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.apiary.tools;
+
+import org.apiary.config.AppConfig;
+
+/**
+ * Command line handling shared by the tools
+ */
+final class ToolSettings {
+
+    // Prevent instantiation
+    private ToolSettings() {
+    }
+
+    /**
+     * Apply key=value arguments as settings, before the configuration is first read
+     * @param args The arguments
+     * @param defaultProfile The profile to use if none is given
+     */
+    static void apply(String[] args, String defaultProfile) {
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                System.err.println("Ignoring argument, expected key=value: " + arg);
+                continue;
+            }
+            System.setProperty(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        if (defaultProfile != null && System.getProperty(AppConfig.PROFILE_KEY) == null
+                && System.getenv("APP_PROFILE") == null) {
+            System.setProperty(AppConfig.PROFILE_KEY, defaultProfile);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.apiary.utils;
 
+import org.apiary.metrics.jfr.PasswordHashEvent;
+
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 import java.security.NoSuchAlgorithmException;
@@ -11,7 +13,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Utility class for securely hashing and verifying passwords
+ * Utility class for securely hashing and verifying passwords.
+ * Every hash is recorded as a PasswordHashEvent for JDK Flight Recorder.
  */
 public class PasswordUtils {
 
@@ -37,6 +40,9 @@ public class PasswordUtils {
      * @return A Base64 encoded string containing the salt and hash, separated by a colon
      */
     public static String hashPassword(String password) {
+        PasswordHashEvent event = new PasswordHashEvent();
+        event.begin();
+        boolean succeeded = false;
         try {
             // Generate a random salt
             byte[] salt = generateSalt();
@@ -49,10 +55,13 @@ public class PasswordUtils {
             String hashBase64 = Base64.getEncoder().encodeToString(hash);
 
             // Return salt:hash
+            succeeded = true;
             return saltBase64 + DELIMITER + hashBase64;
         } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
             LOGGER.log(Level.SEVERE, "Error hashing password", e);
             throw new RuntimeException("Error hashing password", e);
+        } finally {
+            event.complete("hash", ALGORITHM, ITERATIONS, succeeded);
         }
     }
 
@@ -64,6 +73,9 @@ public class PasswordUtils {
      * @return true if the password matches, false otherwise
      */
     public static boolean verifyPassword(String password, String storedHash) {
+        PasswordHashEvent event = new PasswordHashEvent();
+        event.begin();
+        boolean matched = false;
         try {
             // Split the stored hash into salt and hash
             String[] parts = storedHash.split(DELIMITER);
@@ -79,10 +91,13 @@ public class PasswordUtils {
             byte[] testHash = hashPassword(password.toCharArray(), salt);
 
             // Compare the hashes
-            return Arrays.equals(hash, testHash);
+            matched = Arrays.equals(hash, testHash);
+            return matched;
         } catch (NoSuchAlgorithmException | InvalidKeySpecException | IllegalArgumentException e) {
             LOGGER.log(Level.SEVERE, "Error verifying password", e);
             return false;
+        } finally {
+            event.complete("verify", ALGORITHM, ITERATIONS, matched);
         }
     }
 
@@ -0,0 +1,137 @@
+package org.apiary.utils.pagination;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Position of the last row of a keyset page: the value of its sort key and its id.
+ * The next page starts right after this position, so it costs the same no matter how deep it is.
+ * Cursors travel through the UI as opaque tokens, see {@link #toToken()} and {@link #fromToken(String)}.
+ */
+public class Cursor {
+    private static final String SEPARATOR = "\n";
+
+    private final Object sortValue;
+    private final Object id;
+
+    /**
+     * Create a new cursor
+     * @param sortValue The sort key value of the last row, or null when sorting by id only
+     * @param id The id of the last row
+     */
+    public Cursor(Object sortValue, Object id) {
+        this.sortValue = sortValue;
+        this.id = Objects.requireNonNull(id, "Cursor id must not be null");
+    }
+
+    /**
+     * Get the sort key value of the last row
+     * @return The sort key value, or null when sorting by id only
+     */
+    public Object getSortValue() {
+        return sortValue;
+    }
+
+    /**
+     * Get the id of the last row
+     * @return The id of the last row
+     */
+    public Object getId() {
+        return id;
+    }
+
+    /**
+     * Encode this cursor as an opaque, URL-safe token
+     * @return The token
+     */
+    public String toToken() {
+        String raw = encodeValue(id) + (sortValue != null ? SEPARATOR + encodeValue(sortValue) : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor from a token created by {@link #toToken()}
+     * @param token The token
+     * @return The cursor
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static Cursor fromToken(String token) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor token: " + token, e);
+        }
+
+        // The id never contains the separator, the sort value (e.g. a name) might
+        int separatorIndex = raw.indexOf(SEPARATOR);
+        if (separatorIndex < 0) {
+            return new Cursor(null, decodeValue(raw));
+        }
+        return new Cursor(decodeValue(raw.substring(separatorIndex + 1)), decodeValue(raw.substring(0, separatorIndex)));
+    }
+
+    private static String encodeValue(Object value) {
+        if (value instanceof Integer) {
+            return "I:" + value;
+        } else if (value instanceof Long) {
+            return "L:" + value;
+        } else if (value instanceof BigDecimal) {
+            return "D:" + ((BigDecimal) value).toPlainString();
+        } else if (value instanceof LocalDateTime) {
+            return "T:" + value;
+        } else if (value instanceof String) {
+            return "S:" + value;
+        }
+        throw new IllegalArgumentException("Unsupported cursor value type: " + value.getClass().getName());
+    }
+
+    private static Object decodeValue(String encoded) {
+        if (encoded.length() < 2 || encoded.charAt(1) != ':') {
+            throw new IllegalArgumentException("Invalid cursor value: " + encoded);
+        }
+        String value = encoded.substring(2);
+        try {
+            switch (encoded.charAt(0)) {
+                case 'I':
+                    return Integer.valueOf(value);
+                case 'L':
+                    return Long.valueOf(value);
+                case 'D':
+                    return new BigDecimal(value);
+                case 'T':
+                    return LocalDateTime.parse(value);
+                case 'S':
+                    return value;
+                default:
+                    throw new IllegalArgumentException("Invalid cursor value: " + encoded);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor value: " + encoded, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Cursor cursor = (Cursor) o;
+        return Objects.equals(sortValue, cursor.sortValue) && Objects.equals(id, cursor.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sortValue, id);
+    }
+
+    @Override
+    public String toString() {
+        return "Cursor{" +
+                "sortValue=" + sortValue +
+                ", id=" + id +
+                '}';
+    }
+}
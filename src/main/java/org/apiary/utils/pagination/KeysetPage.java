@@ -0,0 +1,67 @@
+package org.apiary.utils.pagination;
+
+import java.util.List;
+
+/**
+ * Represents a page of items fetched with keyset pagination.
+ * Keyset pages do not know the total number of elements; they only know
+ * whether another page follows and where it starts.
+ * @param <T> The type of items in the page
+ */
+public class KeysetPage<T> {
+    private final List<T> content;
+    private final int pageSize;
+    private final Cursor nextCursor;
+
+    /**
+     * Create a new keyset page
+     * @param content The content of the page
+     * @param pageSize The page size
+     * @param nextCursor The cursor of the last item, or null if this is the last page
+     */
+    public KeysetPage(List<T> content, int pageSize, Cursor nextCursor) {
+        this.content = content;
+        this.pageSize = pageSize;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Get the content of the page
+     * @return The content of the page
+     */
+    public List<T> getContent() {
+        return content;
+    }
+
+    /**
+     * Get the page size
+     * @return The page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Get the cursor to continue from
+     * @return The cursor of the last item, or null if this is the last page
+     */
+    public Cursor getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Get the cursor to continue from as an opaque token
+     * @return The token, or null if this is the last page
+     */
+    public String getNextToken() {
+        return nextCursor != null ? nextCursor.toToken() : null;
+    }
+
+    /**
+     * Check if there is a next page
+     * @return true if there is a next page, false otherwise
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
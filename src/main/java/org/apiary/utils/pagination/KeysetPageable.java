@@ -0,0 +1,123 @@
+package org.apiary.utils.pagination;
+
+/**
+ * Represents keyset (seek) pagination information for a query.
+ * Instead of skipping page * size rows, the query continues after the cursor
+ * of the previous page, so the cost of a page does not grow with its depth.
+ */
+public class KeysetPageable {
+    private final int size;
+    private final String sortBy;
+    private final String sortDirection;
+    private final Cursor cursor;
+
+    /**
+     * Create a new keyset pageable for the first page with default sorting (by id, ascending)
+     * @param size The page size
+     */
+    public KeysetPageable(int size) {
+        this(size, "id", "asc", null);
+    }
+
+    /**
+     * Create a new keyset pageable
+     * @param size The page size
+     * @param sortBy The field to sort by
+     * @param sortDirection The sort direction ("asc" or "desc")
+     * @param cursor The cursor of the previous page, or null for the first page
+     */
+    public KeysetPageable(int size, String sortBy, String sortDirection, Cursor cursor) {
+        this.size = Math.max(1, size); // Ensure size is at least 1
+        this.sortBy = sortBy;
+        this.sortDirection = sortDirection;
+        this.cursor = cursor;
+    }
+
+    /**
+     * Create a new keyset pageable continuing after a cursor token
+     * @param size The page size
+     * @param sortBy The field to sort by
+     * @param sortDirection The sort direction ("asc" or "desc")
+     * @param token The cursor token of the previous page, or null/blank for the first page
+     * @return A new keyset pageable
+     */
+    public static KeysetPageable fromToken(int size, String sortBy, String sortDirection, String token) {
+        Cursor cursor = token == null || token.isBlank() ? null : Cursor.fromToken(token);
+        return new KeysetPageable(size, sortBy, sortDirection, cursor);
+    }
+
+    /**
+     * Get the page size
+     * @return The page size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the field to sort by
+     * @return The field to sort by
+     */
+    public String getSortBy() {
+        return sortBy;
+    }
+
+    /**
+     * Get the sort direction
+     * @return The sort direction ("asc" or "desc")
+     */
+    public String getSortDirection() {
+        return sortDirection;
+    }
+
+    /**
+     * Check if sorting is ascending
+     * @return true if sorting is ascending, false otherwise
+     */
+    public boolean isSortAscending() {
+        return "asc".equalsIgnoreCase(sortDirection);
+    }
+
+    /**
+     * Get the cursor of the previous page
+     * @return The cursor, or null for the first page
+     */
+    public Cursor getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Check if this is the first page
+     * @return true if there is no cursor, false otherwise
+     */
+    public boolean isFirst() {
+        return cursor == null;
+    }
+
+    /**
+     * Create a new keyset pageable for the page after the given one
+     * @param page The current page
+     * @return A new keyset pageable for the next page, or this pageable if there is no next page
+     */
+    public KeysetPageable next(KeysetPage<?> page) {
+        return page.hasNext() ? new KeysetPageable(size, sortBy, sortDirection, page.getNextCursor()) : this;
+    }
+
+    /**
+     * Create a new keyset pageable for the first page
+     * @return A new keyset pageable for the first page
+     */
+    public KeysetPageable first() {
+        return new KeysetPageable(size, sortBy, sortDirection, null);
+    }
+
+    /**
+     * Create a new keyset pageable with different sorting, starting from the first page
+     * @param newSortBy The new field to sort by
+     * @param newSortDirection The new sort direction
+     * @return A new keyset pageable with the specified sorting
+     */
+    public KeysetPageable withSort(String newSortBy, String newSortDirection) {
+        return new KeysetPageable(size, newSortBy, newSortDirection, null);
+    }
+}
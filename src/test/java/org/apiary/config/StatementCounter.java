@@ -0,0 +1,82 @@
+package org.apiary.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the SQL statements Hibernate prepares while a scope is open.
+ * Registered as the session factory's statement inspector through the
+ * hibernate.statementInspector setting (see HibernateConfig). The scope covers every
+ * thread, so the statements of work a service hands to its own threads (order intake,
+ * payment fulfilment) are counted too, as long as the caller waits for it before the
+ * scope ends; the tests therefore count one call at a time.
+ */
+public class StatementCounter implements StatementInspector {
+
+    private static Scope scope;
+
+    @Override
+    public String inspect(String sql) {
+        synchronized (StatementCounter.class) {
+            if (scope != null) {
+                scope.total++;
+                scope.bySql.merge(sql, 1, Integer::sum);
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * Start counting statements
+     * @throws IllegalStateException if a scope is already open
+     */
+    public static synchronized void begin() {
+        if (scope != null) {
+            throw new IllegalStateException("Statements are already being counted");
+        }
+        scope = new Scope();
+    }
+
+    /**
+     * Stop counting statements
+     * @return The statements counted since begin(), or null if no scope was open
+     */
+    public static synchronized Scope end() {
+        Scope ended = scope;
+        scope = null;
+        return ended;
+    }
+
+    /**
+     * Statements prepared while a scope was open
+     */
+    public static final class Scope {
+        private final Map<String, Integer> bySql = new HashMap<>();
+        private int total;
+
+        private Scope() {
+        }
+
+        /**
+         * Get the number of statements prepared in the scope
+         * @return The number of statements
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * Get the query that was prepared the most times in the scope; repeated writes are
+         * left out since a JDBC batch of one entity type is prepared once per flush
+         * @return The SQL and its count, or null if no query was prepared
+         */
+        public Map.Entry<String, Integer> getMostRepeatedQuery() {
+            return bySql.entrySet().stream()
+                    .filter(entry -> entry.getKey().trim().regionMatches(true, 0, "select", 0, 6))
+                    .max(Map.Entry.comparingByValue())
+                    .orElse(null);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.apiary.service;
+
+import org.apiary.config.HibernateConfig;
+import org.apiary.model.Client;
+import org.apiary.model.HoneyProduct;
+import org.apiary.model.Order;
+import org.apiary.repository.RepositoryFactory;
+import org.apiary.repository.UnitOfWork;
+import org.apiary.service.interfaces.HoneyProductService;
+import org.apiary.service.interfaces.OrderService;
+import org.apiary.service.interfaces.ShoppingCartService;
+import org.apiary.tools.DataGenerator;
+import org.apiary.utils.pagination.Pageable;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs checkouts of the same product at the same time against the seeded in-memory database
+ * of the test profile, checking that the later one waits for the product row and then goes
+ * through instead of failing on the stock the earlier one changed
+ */
+class CheckoutConcurrencyTest {
+
+    private static final long WAIT_MILLIS = 300;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static HoneyProductService honeyProductService;
+    private static ShoppingCartService shoppingCartService;
+    private static OrderService orderService;
+
+    @BeforeAll
+    static void setUp() {
+        // Before the settings are first read: embedded H2 database
+        System.setProperty("app.profile", "test");
+
+        HibernateConfig.getSessionFactory();
+        DataGenerator.seedIfEnabled();
+
+        honeyProductService = ServiceFactory.getHoneyProductService();
+        shoppingCartService = ServiceFactory.getShoppingCartService();
+        orderService = ServiceFactory.getOrderService();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        HibernateConfig.shutdown();
+    }
+
+    @Test
+    void checkoutWaitsForAConcurrentCheckoutOfTheSameProduct() throws Exception {
+        HoneyProduct product = honeyProductService.findAvailableProducts(new Pageable(0, 20)).getContent().stream()
+                .filter(candidate -> candidate.getQuantity().compareTo(BigDecimal.valueOf(2)) >= 0)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Test database has no product with enough stock"));
+        BigDecimal stock = product.getQuantity();
+        Client client = client(4);
+        shoppingCartService.clearCart(client);
+        assertTrue(shoppingCartService.addToCart(client, product, 1));
+
+        // The first checkout takes the product and holds its row until it is released
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> UnitOfWork.execute(() -> {
+            boolean taken = RepositoryFactory.getHoneyProductRepository()
+                    .decrementQuantities(Map.of(product.getProductId(), BigDecimal.ONE));
+            locked.countDown();
+            await(release);
+            return taken;
+        }));
+        assertTrue(locked.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        CompletableFuture<Order> second = CompletableFuture.supplyAsync(() -> orderService.createOrderFromCart(client));
+        Thread.sleep(WAIT_MILLIS);
+        assertFalse(second.isDone(), "Second checkout did not wait for the product row");
+
+        release.countDown();
+        assertTrue(first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNotNull(second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS), "Second checkout failed after waiting");
+
+        HoneyProduct after = honeyProductService.findById(product.getProductId()).orElseThrow();
+        assertEquals(0, stock.subtract(BigDecimal.valueOf(2)).compareTo(after.getQuantity()));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Client client(int index) {
+        return ServiceFactory.getUserService().findClientByUsername(DataGenerator.clientName(index))
+                .orElseThrow(() -> new IllegalStateException("Test database was not seeded"));
+    }
+}
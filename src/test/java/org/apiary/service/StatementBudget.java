@@ -0,0 +1,96 @@
+package org.apiary.service;
+
+import org.apiary.config.StatementCounter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks how many SQL statements a service call issues (see StatementCounter), failing when
+ * <ul>
+ *   <li>the call exceeds the budget declared for it in statement-budgets.properties, or</li>
+ *   <li>the same query ran at least N_PLUS_ONE_THRESHOLD times, the usual sign of an N+1 load.</li>
+ * </ul>
+ * A call that returns a CompletableFuture is counted until the future completes, so the
+ * statements run on the service's own threads are part of its budget.
+ */
+public final class StatementBudget {
+
+    private static final String BUDGETS_RESOURCE = "/statement-budgets.properties";
+    private static final int N_PLUS_ONE_THRESHOLD = 5;
+    private static final int MAX_SQL_LENGTH = 200;
+
+    private static final Properties BUDGETS = loadBudgets();
+
+    // Prevent instantiation
+    private StatementBudget() {
+    }
+
+    /**
+     * Get the statement budget declared for a service method
+     * @param operation The operation, as ServiceInterface.method
+     * @return The maximum number of statements, or -1 if no budget is declared
+     */
+    public static int getBudget(String operation) {
+        String budget = BUDGETS.getProperty(operation);
+        return budget == null ? -1 : Integer.parseInt(budget.trim());
+    }
+
+    /**
+     * Run a service call and check its statements against its budget
+     * @param operation The operation, as ServiceInterface.method
+     * @param call The call
+     * @param <R> The type of the result
+     * @return The result of the call, joined if it is a CompletableFuture
+     */
+    public static <R> R assertWithinBudget(String operation, Supplier<R> call) {
+        int budget = getBudget(operation);
+        assertTrue(budget >= 0, "No statement budget declared for " + operation);
+
+        StatementCounter.begin();
+        R result;
+        StatementCounter.Scope scope;
+        try {
+            result = call.get();
+            if (result instanceof CompletableFuture) {
+                ((CompletableFuture<?>) result).join();
+            }
+        } finally {
+            scope = StatementCounter.end();
+        }
+
+        assertNotNull(scope, "Statements of " + operation + " were not counted");
+        assertTrue(scope.getTotal() <= budget,
+                operation + " issued " + scope.getTotal() + " SQL statements, budget is " + budget);
+        Map.Entry<String, Integer> mostRepeated = scope.getMostRepeatedQuery();
+        assertTrue(mostRepeated == null || mostRepeated.getValue() < N_PLUS_ONE_THRESHOLD,
+                () -> "Possible N+1 in " + operation + ": query ran " + mostRepeated.getValue()
+                        + " times: " + abbreviate(mostRepeated.getKey()));
+        return result;
+    }
+
+    private static String abbreviate(String sql) {
+        String singleLine = sql.replaceAll("\\s+", " ").trim();
+        return singleLine.length() <= MAX_SQL_LENGTH ? singleLine : singleLine.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+
+    private static Properties loadBudgets() {
+        Properties budgets = new Properties();
+        try (InputStream input = StatementBudget.class.getResourceAsStream(BUDGETS_RESOURCE)) {
+            if (input != null) {
+                budgets.load(input);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error loading statement budgets", e);
+        }
+        return budgets;
+    }
+}
@@ -0,0 +1,151 @@
+package org.apiary.service;
+
+import org.apiary.config.HibernateConfig;
+import org.apiary.config.StatementCounter;
+import org.apiary.model.Apiary;
+import org.apiary.model.Beekeeper;
+import org.apiary.model.Client;
+import org.apiary.model.HoneyProduct;
+import org.apiary.model.Order;
+import org.apiary.service.interfaces.ApiaryService;
+import org.apiary.service.interfaces.HiveService;
+import org.apiary.service.interfaces.HoneyProductService;
+import org.apiary.service.interfaces.OrderService;
+import org.apiary.service.interfaces.ShoppingCartService;
+import org.apiary.tools.DataGenerator;
+import org.apiary.utils.pagination.Pageable;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.apiary.service.StatementBudget.assertWithinBudget;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the service calls behind the catalog, cart and order screens against the seeded
+ * in-memory database of the test profile and checks their SQL statements against the
+ * budgets in statement-budgets.properties (see StatementBudget)
+ */
+class StatementBudgetTest {
+
+    private static final int PAGE_SIZE = 20;
+
+    private static HoneyProductService honeyProductService;
+    private static ApiaryService apiaryService;
+    private static HiveService hiveService;
+    private static ShoppingCartService shoppingCartService;
+    private static OrderService orderService;
+
+    private static Beekeeper beekeeper;
+    private static List<HoneyProduct> products;
+
+    @BeforeAll
+    static void setUp() {
+        // Before the settings are first read: embedded H2 database, statements counted
+        System.setProperty("app.profile", "test");
+        System.setProperty("hibernate.statementInspector", StatementCounter.class.getName());
+
+        HibernateConfig.getSessionFactory();
+        DataGenerator.seedIfEnabled();
+
+        honeyProductService = ServiceFactory.getHoneyProductService();
+        apiaryService = ServiceFactory.getApiaryService();
+        hiveService = ServiceFactory.getHiveService();
+        shoppingCartService = ServiceFactory.getShoppingCartService();
+        orderService = ServiceFactory.getOrderService();
+
+        beekeeper = ServiceFactory.getUserService().findBeekeeperByUsername(DataGenerator.beekeeperName(0))
+                .orElseThrow(() -> new IllegalStateException("Test database was not seeded"));
+        products = honeyProductService.findAvailableProducts(new Pageable(0, 3)).getContent();
+        assertFalse(products.isEmpty(), "Test database has no products in stock");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        HibernateConfig.shutdown();
+    }
+
+    @Test
+    void catalogCallsStayWithinBudget() {
+        Pageable page = new Pageable(0, PAGE_SIZE, "price", "asc");
+        assertWithinBudget("HoneyProductService.findByFilters",
+                () -> honeyProductService.findByFilters(null, null, null, page));
+        assertWithinBudget("HoneyProductService.findAvailableProducts",
+                () -> honeyProductService.findAvailableProducts(page));
+        assertWithinBudget("HoneyProductService.findByNameContaining",
+                () -> honeyProductService.findByNameContaining("honey", null, null, null, page));
+        assertWithinBudget("HoneyProductService.findByBeekeeper",
+                () -> honeyProductService.findByBeekeeper(beekeeper));
+
+        List<Apiary> apiaries = assertWithinBudget("ApiaryService.findByBeekeeper",
+                () -> apiaryService.findByBeekeeper(beekeeper, new Pageable(0, PAGE_SIZE))).getContent();
+        assertFalse(apiaries.isEmpty());
+        assertWithinBudget("HiveService.findByApiary", () -> hiveService.findByApiary(apiaries.get(0)));
+    }
+
+    @Test
+    void cartCallsStayWithinBudget() {
+        Client client = client(0);
+        assertTrue(assertWithinBudget("ShoppingCartService.addToCart",
+                () -> shoppingCartService.addToCart(client, products.get(0), 1)));
+        assertFalse(assertWithinBudget("ShoppingCartService.getCartItems",
+                () -> shoppingCartService.getCartItems(client)).isEmpty());
+        shoppingCartService.clearCart(client);
+    }
+
+    @Test
+    void placingAnOrderStaysWithinBudget() {
+        Client client = client(1);
+        fillCart(client);
+        assertNotNull(assertWithinBudget("OrderService.createOrderFromCart",
+                () -> orderService.createOrderFromCart(client)));
+
+        fillCart(client);
+        assertNotNull(assertWithinBudget("OrderService.createOrderFromCartAsync",
+                () -> orderService.createOrderFromCartAsync(client)).join());
+    }
+
+    @Test
+    void payingForAnOrderStaysWithinBudget() {
+        Client client = client(2);
+        fillCart(client);
+        Order order = orderService.createOrderFromCart(client);
+        assertNotNull(order);
+        assertTrue(assertWithinBudget("OrderService.processPayment",
+                () -> orderService.processPayment(order.getOrderId())));
+
+        fillCart(client);
+        Order another = orderService.createOrderFromCart(client);
+        assertNotNull(another);
+        assertTrue(assertWithinBudget("OrderService.processPaymentAsync",
+                () -> orderService.processPaymentAsync(another.getOrderId())).join());
+    }
+
+    @Test
+    void orderListsStayWithinBudget() {
+        Client client = client(3);
+        assertWithinBudget("OrderService.findByClient",
+                () -> orderService.findByClient(client, new Pageable(0, PAGE_SIZE, "date", "desc")));
+        assertWithinBudget("OrderService.findOrdersForBeekeeper",
+                () -> orderService.findOrdersForBeekeeper(beekeeper));
+        LocalDateTime now = LocalDateTime.now();
+        assertWithinBudget("OrderService.findOrdersWithFilters",
+                () -> orderService.findOrdersWithFilters(beekeeper, "PAID", now.minusYears(1), now));
+    }
+
+    private static Client client(int index) {
+        return ServiceFactory.getUserService().findClientByUsername(DataGenerator.clientName(index))
+                .orElseThrow(() -> new IllegalStateException("Test database was not seeded"));
+    }
+
+    private static void fillCart(Client client) {
+        for (HoneyProduct product : products) {
+            assertTrue(shoppingCartService.addToCart(client, product, 1));
+        }
+    }
+}